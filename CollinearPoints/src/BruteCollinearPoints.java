@@ -1,14 +1,23 @@
 import java.util.ArrayList;
+import java.util.Arrays;
 
-import edu.princeton.cs.algs4.In;
 import edu.princeton.cs.algs4.StdDraw;
 import edu.princeton.cs.algs4.StdOut;
 
 /**
  * This class examinees a set of planar points and then computes the maximal line
  * segments consisting of 4 points or more. It uses a "brute force" approach
- * where we look at every possible combination of 4 points and see whether they
- * form a line segment or not.
+ * where we look at every pair of points and every other point to see whether
+ * it lies on the line through the pair or not.
+ *
+ * The points are sorted first, which also brings repeated points next to each
+ * other. A maximal segment is then reported from its two smallest points only:
+ * for a pair i < j, the third points after j are checked first, and the
+ * points before j only when enough of them lie on the line, any of them lying
+ * on the line meaning that the pair is not the first of its line and the scan
+ * stops. Points are compared to the line with exact integer cross products
+ * instead of slopes rounded to doubles, so this class can serve as a slow but
+ * simple reference for the other engines, up to a few thousand points.
  */
 public class BruteCollinearPoints {
     private ArrayList<LineSegment> segments = null;
@@ -26,49 +35,72 @@ public class BruteCollinearPoints {
      *             if two points have the same value
      */
     public BruteCollinearPoints(Point[] points) {
+        this(points, 4);
+    }
+
+    /**
+     * Finds all maximal line segments containing at least minPoints points
+     * 
+     * @param points
+     *            The set of coplanar points in which to find the line segments
+     * @param minPoints
+     *            the smallest number of points of a reported segment
+     * @throws NullPointerException
+     *             if the argument of the constructor is null
+     * @throws NullPointerException
+     *             if any of the points in the input array is null
+     * @throws IllegalArgumentException
+     *             if two points have the same value or minPoints is less
+     *             than 2
+     */
+    public BruteCollinearPoints(Point[] points, int minPoints) {
         if (points == null)
             throw new NullPointerException();
+        if (minPoints < 2)
+            throw new IllegalArgumentException();
         segments = new ArrayList<LineSegment>();
 
-        for (int i = 0; i < points.length - 3; ++i) {
-            for (int j = i + 1; j < points.length - 2; ++j) {
-                for (int k = j + 1; k < points.length - 1; ++k) {
-                    for (int w = k + 1; w < points.length; ++w) {
-
-                        double slopeij = points[i].slopeTo(points[j]);
-                        double slopejk = points[j].slopeTo(points[k]);
-                        double slopekw = points[k].slopeTo(points[w]);
-
-                        // extra for duplicate points check
-                        double slopeik = points[i].slopeTo(points[k]);
-                        double slopeiw = points[i].slopeTo(points[w]);
-                        double slopejw = points[j].slopeTo(points[w]);
-
-                        // check for points repetition
-                        if (slopeij == Double.NEGATIVE_INFINITY || slopejk == Double.NEGATIVE_INFINITY
-                                || slopekw == Double.NEGATIVE_INFINITY || slopeik == Double.NEGATIVE_INFINITY
-                                || slopeiw == Double.NEGATIVE_INFINITY || slopejw == Double.NEGATIVE_INFINITY)
-                            throw new IllegalArgumentException("repeated points present!");
-
-                        // now choose the maximum line segment if the slopes are
-                        // equal
-                        if (slopeij == slopejk && slopejk == slopekw) {
-                            int maxPoint = maxOutOfFour(points, i, j, k, w);
-                            int minPoint = minOutOfFour(points, i, j, k, w);
-                            segments.add(new LineSegment(points[minPoint], points[maxPoint]));
-                        }
+        Point[] sorted = Arrays.copyOf(points, points.length);
+        Arrays.sort(sorted);
+        int n = sorted.length;
+        for (int i = 0; i < n - 1; ++i) {
+            if (sorted[i].compareTo(sorted[i + 1]) == 0)
+                throw new IllegalArgumentException("repeated points present!");
+        }
+        long[] xs = new long[n];
+        long[] ys = new long[n];
+        for (int i = 0; i < n; ++i) {
+            xs[i] = sorted[i].x();
+            ys[i] = sorted[i].y();
+        }
+
+        for (int i = 0; i < n - 1; ++i) {
+            for (int j = i + 1; j < n; ++j) {
+                long dx = xs[j] - xs[i];
+                long dy = ys[j] - ys[i];
+
+                // the points after j on the line, the largest one ending the
+                // segment
+                int count = 2;
+                int last = j;
+                for (int k = j + 1; k < n; ++k) {
+                    if (collinear(dx, dy, xs[k] - xs[i], ys[k] - ys[i])) {
+                        count++;
+                        last = k;
                     }
                 }
-            }
-        }
-        
-        // throw their fucking exceptions
-        if (points.length <= 3) {
-            if (points[0].compareTo(points[1]) == 0) 
-                throw new IllegalArgumentException();
-            if (points.length == 3) {
-                if (points[0].compareTo(points[2]) == 0 || points[1].compareTo(points[2]) == 0) {
-                    throw new IllegalArgumentException();    
+                if (count < minPoints)
+                    continue;
+
+                // the segment belongs to the first pair of its points
+                boolean first = true;
+                for (int k = 0; k < j && first; ++k) {
+                    if (k != i && collinear(dx, dy, xs[k] - xs[i], ys[k] - ys[i])) {
+                        first = false;
+                    }
+                }
+                if (first) {
+                    segments.add(new LineSegment(sorted[i], sorted[last]));
                 }
             }
         }
@@ -92,21 +124,14 @@ public class BruteCollinearPoints {
      */
     public LineSegment[] segments() {
         LineSegment[] a = new LineSegment[segments.size()];
-        return (LineSegment[]) segments.toArray(a);
+        return segments.toArray(a);
 
     }
 
     public static void main(String[] args) {
 
         // read the N points from a file
-        In in = new In(args[0]);
-        int N = in.readInt();
-        Point[] points = new Point[N];
-        for (int i = 0; i < N; i++) {
-            int x = in.readInt();
-            int y = in.readInt();
-            points[i] = new Point(x, y);
-        }
+        Point[] points = PointFiles.read(args[0]).points();
 
         // draw the points
         StdDraw.show(0);
@@ -126,37 +151,9 @@ public class BruteCollinearPoints {
 
     }
 
-    private int maxOutOfFour(Point[] points, int i, int j, int k, int w) {
-        int max = i;
-        if (points[max].compareTo(points[j]) < 0) {
-            max = j;
-        }
-
-        if (points[max].compareTo(points[k]) < 0) {
-            max = k;
-        }
-
-        if (points[max].compareTo(points[w]) < 0) {
-            max = w;
-        }
-
-        return max;
-    }
-
-    private int minOutOfFour(Point[] points, int i, int j, int k, int w) {
-        int min = i;
-        if (points[min].compareTo(points[j]) > 0) {
-            min = j;
-        }
-
-        if (points[min].compareTo(points[k]) > 0) {
-            min = k;
-        }
-
-        if (points[min].compareTo(points[w]) > 0) {
-            min = w;
-        }
-
-        return min;
+    // whether two vectors from the same point are collinear, their cross
+    // product being computed on 128 bits as coordinates may take 33 bits
+    private static boolean collinear(long dx1, long dy1, long dx2, long dy2) {
+        return dx1 * dy2 == dx2 * dy1 && Math.multiplyHigh(dx1, dy2) == Math.multiplyHigh(dx2, dy1);
     }
 }
@@ -0,0 +1,409 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import edu.princeton.cs.algs4.StdOut;
+
+/**
+ * Finds the segments of many point files at once, writing the segments of
+ * every input to its own file in an output directory, one segment per line,
+ * and a timing summary of the whole batch. The files are processed in
+ * parallel on a fixed number of threads, with a bounded queue of waiting
+ * files, the thread submitting the files running them itself when the queue
+ * is full, so a huge batch never holds more than a few point sets at once.
+ *
+ * The same points are often uploaded again, sometimes in another order, so
+ * the segments are cached under the SHA-256 of the points sorted in natural
+ * order: the segments of a set only depend on its points, and the engine
+ * reports them in the natural order of their smallest points, so the output
+ * is the same whatever the order of the file. The cache keeps the most
+ * recently used results in memory, in a LinkedHashMap in access order, and
+ * optionally every result in a directory, one file per hash, which survives
+ * from one batch to the next. The files of the directory are named after
+ * CACHE_VERSION too, so results of an older engine or output format are never
+ * read back. Results in memory are futures, so identical files in the same
+ * batch are computed once, the others waiting for it: a result being
+ * computed is never evicted, only finished ones are.
+ */
+public class CollinearBatch {
+    private static final int QUEUE_PER_THREAD = 2;
+    // to be changed whenever the engine or the text of the segment files
+    // changes, so the disk cache misses instead of returning stale results
+    private static final String CACHE_VERSION = "hough1";
+
+    // the segments of a point set, as the text of the segment file
+    private static final class Result {
+        private final byte[] text;
+        private final int segments;
+
+        Result(byte[] text, int segments) {
+            this.text = text;
+            this.segments = segments;
+        }
+    }
+
+    // how one input went, for the summary
+    private static final class Report {
+        private final String input;
+        private int points = -1;
+        private int segments = -1;
+        private String source = "error: not finished"; // where the segments
+                                                        // came from
+        private long nanos;
+
+        Report(String input) {
+            this.input = input;
+        }
+    }
+
+    private final File outputDirectory;
+    private final File diskCache; // null when there is no disk cache
+    private final int memoryEntries;
+    private final LinkedHashMap<String, Future<Result>> cache;
+
+    /**
+     * Creates a runner writing to the given directory
+     *
+     * @param outputDirectory
+     *            the directory of the segment files and the summary, created
+     *            if needed
+     * @param memoryEntries
+     *            the number of finished results kept in memory, on top of
+     *            those being computed, with 0 an input only shares the result
+     *            of an identical one still being computed
+     * @param diskCache
+     *            the directory of the disk cache, created if needed, or null
+     *            to keep results in memory only
+     * @throws NullPointerException
+     *             if the output directory is null
+     * @throws IllegalArgumentException
+     *             if memoryEntries is negative
+     */
+    public CollinearBatch(File outputDirectory, int memoryEntries, File diskCache) {
+        if (outputDirectory == null)
+            throw new NullPointerException();
+        if (memoryEntries < 0)
+            throw new IllegalArgumentException();
+        this.outputDirectory = outputDirectory;
+        this.memoryEntries = memoryEntries;
+        this.diskCache = diskCache;
+        cache = new LinkedHashMap<String, Future<Result>>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            // evicts the least recently used finished results, the results
+            // being computed are kept for the inputs waiting for them
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Future<Result>> eldest) {
+                Iterator<Future<Result>> results = values().iterator();
+                while (size() > CollinearBatch.this.memoryEntries && results.hasNext()) {
+                    if (results.next().isDone())
+                        results.remove();
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Processes point files, the segments of input.txt being written to
+     * input.txt.segments in the output directory, and the summary to
+     * summary.txt, inputs of the same name overwriting each other's output
+     *
+     * @param inputs
+     *            the point files, in either format of PointFiles
+     * @param threads
+     *            the number of files processed at once
+     * @return the summary, also written to summary.txt
+     * @throws IllegalArgumentException
+     *             if threads is not positive
+     * @throws UncheckedIOException
+     *             if the output cannot be written
+     * @throws Error
+     *             if processing a file on the calling thread threw one, once
+     *             the other files are done and the summary is written
+     */
+    public String run(File[] inputs, int threads) {
+        if (threads <= 0)
+            throw new IllegalArgumentException();
+        mkdirs(outputDirectory);
+        if (diskCache != null)
+            mkdirs(diskCache);
+
+        long start = System.nanoTime();
+        Report[] reports = new Report[inputs.length];
+        for (int i = 0; i < inputs.length; ++i) {
+            reports[i] = new Report(inputs[i].getPath());
+        }
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(QUEUE_PER_THREAD * threads), new ThreadPoolExecutor.CallerRunsPolicy());
+        // the calling thread runs files too when the queue is full, an error
+        // there stops the submissions but the summary is still written
+        Error failure = null;
+        try {
+            for (int i = 0; i < inputs.length; ++i) {
+                Report report = reports[i];
+                File input = inputs[i];
+                pool.execute(() -> process(input, report));
+            }
+        } catch (Error e) {
+            failure = e;
+        } finally {
+            pool.shutdown();
+        }
+        try {
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+
+        String summary = summary(reports, System.nanoTime() - start);
+        try {
+            Files.write(new File(outputDirectory, "summary.txt").toPath(), summary.getBytes(StandardCharsets.US_ASCII));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (failure != null)
+            throw failure;
+        return summary;
+    }
+
+    // reads, hashes and looks up one file, then writes its segments, any
+    // error being recorded in the report
+    private void process(File input, Report report) {
+        long start = System.nanoTime();
+        try {
+            PointSet points = PointFiles.read(input.getPath());
+            report.points = points.size();
+            String key = key(points);
+
+            CompletableFuture<Result> computing = null;
+            Future<Result> cached;
+            synchronized (cache) {
+                cached = cache.get(key);
+                if (cached == null) {
+                    computing = new CompletableFuture<Result>();
+                    cache.put(key, computing);
+                    cached = computing;
+                }
+            }
+
+            Result result;
+            if (computing != null) {
+                try {
+                    result = readDisk(key);
+                    report.source = "disk";
+                    if (result == null) {
+                        result = compute(points);
+                        report.source = "computed";
+                        writeDisk(key, result);
+                    }
+                } catch (Throwable e) {
+                    // let the next identical input try again, and never leave
+                    // the inputs waiting for this one blocked
+                    synchronized (cache) {
+                        cache.remove(key, computing);
+                    }
+                    computing.completeExceptionally(e);
+                    throw e;
+                }
+                computing.complete(result);
+            } else {
+                result = cached.get();
+                report.source = "memory";
+            }
+
+            report.segments = result.segments;
+            Files.write(new File(outputDirectory, input.getName() + ".segments").toPath(), result.text);
+        } catch (ExecutionException e) {
+            report.source = "error: " + e.getCause();
+        } catch (IOException | RuntimeException e) {
+            report.source = "error: " + e;
+        } catch (InterruptedException e) {
+            report.source = "error: interrupted";
+            Thread.currentThread().interrupt();
+        } catch (Error e) {
+            report.source = "error: " + e;
+            throw e;
+        } finally {
+            report.nanos = System.nanoTime() - start;
+        }
+    }
+
+    private static Result compute(PointSet points) {
+        StringBuilder text = new StringBuilder();
+        int[] segments = new int[1];
+        HoughCollinearPoints.find(points, (p, q, count) -> {
+            text.append(new LineSegment(points.point(p), points.point(q))).append('\n');
+            segments[0]++;
+        });
+        return new Result(text.toString().getBytes(StandardCharsets.US_ASCII), segments[0]);
+    }
+
+    // the result in the disk cache, null if it is not there
+    private Result readDisk(String key) {
+        if (diskCache == null)
+            return null;
+        Path path = diskFile(key).toPath();
+        try {
+            byte[] text = Files.readAllBytes(path);
+            int segments = 0;
+            for (byte b : text) {
+                if (b == '\n')
+                    segments++;
+            }
+            return new Result(text, segments);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // writes a result to the disk cache, through a temporary file moved in
+    // place so a concurrent reader never sees half of it
+    private void writeDisk(String key, Result result) {
+        if (diskCache == null)
+            return;
+        try {
+            Path temporary = Files.createTempFile(diskCache.toPath(), key, ".tmp");
+            Files.write(temporary, result.text);
+            Files.move(temporary, diskFile(key).toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // the file of a result in the disk cache
+    private File diskFile(String key) {
+        return new File(diskCache, CACHE_VERSION + "-" + key);
+    }
+
+    /**
+     * returns the SHA-256, in hexadecimal, of the points of a set sorted in
+     * natural order, the same for every file holding the same points
+     *
+     * @param points
+     *            a set of points
+     * @return the key of the set in the cache
+     */
+    public static String key(PointSet points) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        int[] order = points.naturalOrder();
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(points.size());
+        for (int i : order) {
+            if (buffer.remaining() < 8) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+            buffer.putInt(points.x(i));
+            buffer.putInt(points.y(i));
+        }
+        buffer.flip();
+        digest.update(buffer);
+
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    private static String summary(Report[] reports, long nanos) {
+        StringBuilder summary = new StringBuilder();
+        summary.append(String.format("%-40s %10s %10s %15s  %s\n", "input", "points", "segments", "time", "source"));
+        int computed = 0;
+        int cached = 0;
+        int errors = 0;
+        for (Report report : reports) {
+            summary.append(String.format("%-40s %10d %10d %12.2f ms  %s\n", report.input, report.points,
+                    report.segments, report.nanos / 1e6, report.source));
+            if (report.source.equals("computed"))
+                computed++;
+            else if (report.source.startsWith("error"))
+                errors++;
+            else
+                cached++;
+        }
+        summary.append(String.format("%d files, %d computed, %d from cache, %d errors in %.2f ms\n", reports.length,
+                computed, cached, errors, nanos / 1e6));
+        return summary.toString();
+    }
+
+    private static void mkdirs(File directory) {
+        if (!directory.isDirectory() && !directory.mkdirs())
+            throw new UncheckedIOException(new IOException("cannot create " + directory));
+    }
+
+    /**
+     * Processes point files and directories of point files
+     *
+     * Execution: java CollinearBatch [--threads n] [--memory entries]
+     *            [--disk cacheDirectory] outputDirectory input...
+     */
+    public static void main(String[] args) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        int memory = 1024;
+        File disk = null;
+        int i = 0;
+        for (; i < args.length && args[i].startsWith("--"); i += 2) {
+            if (args[i].equals("--threads"))
+                threads = Integer.parseInt(args[i + 1]);
+            else if (args[i].equals("--memory"))
+                memory = Integer.parseInt(args[i + 1]);
+            else if (args[i].equals("--disk"))
+                disk = new File(args[i + 1]);
+            else
+                throw new IllegalArgumentException("unknown option " + args[i]);
+        }
+        if (i >= args.length - 1) {
+            StdOut.println("usage: java CollinearBatch [--threads n] [--memory entries] [--disk cacheDirectory] "
+                    + "outputDirectory input...");
+            return;
+        }
+
+        File output = new File(args[i]);
+        ArrayList<File> inputs = new ArrayList<File>();
+        for (int j = i + 1; j < args.length; ++j) {
+            File input = new File(args[j]);
+            File[] files = input.listFiles(File::isFile);
+            if (files == null) {
+                inputs.add(input);
+            } else {
+                Arrays.sort(files);
+                inputs.addAll(Arrays.asList(files));
+            }
+        }
+
+        CollinearBatch batch = new CollinearBatch(output, memory, disk);
+        StdOut.print(batch.run(inputs.toArray(new File[inputs.size()]), threads));
+    }
+}
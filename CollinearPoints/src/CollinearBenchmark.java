@@ -0,0 +1,300 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.StdRandom;
+import edu.princeton.cs.algs4.StdStats;
+
+/**
+ * Performance and correctness harness for the collinear engines, run over the
+ * point files of a directory, normally the testing directory, and over
+ * synthetic point sets built to be hard for them: many parallel lines, a dense
+ * grid, lines with huge coordinates and two lines whose slopes round to the
+ * same double.
+ *
+ * For every point set, the segments of every engine are first compared as
+ * sets of strings with those of HashCollinearPoints, an engine rejecting the
+ * set (repeated points) has to agree with it too, and every mismatch is
+ * printed. Every engine is then run for a few warm up iterations and a number
+ * of measured iterations, and the time per run (mean and standard deviation)
+ * and the bytes allocated per run by the running thread are reported, the
+ * threads of the parallel engine are not counted. The brute force engine and
+ * the comparator sort are left out above BRUTE_LIMIT points. The comparator
+ * sort is the search FastCollinearPoints used to do, every other point sorted
+ * by slopeOrder() around every point, it is measured for the number of
+ * comparator calls the radix sort saves. Only point sets whose name contains
+ * the filter are run.
+ *
+ * Execution: java -Xms1g -Xmx1g CollinearBenchmark testingDirectory [filter]
+ */
+public class CollinearBenchmark {
+    private static final int WARMUP_ITERATIONS = 2;
+    private static final int MEASURED_ITERATIONS = 5;
+    private static final int BRUTE_LIMIT = 2000;
+    // the engine the others are checked against, it compares directions
+    // exactly and is fast enough for every point set
+    private static final String REFERENCE = "hash";
+
+    // an engine builds the segments of a point set
+    private interface Engine {
+        LineSegment[] segments(PointSet points);
+    }
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static long sink; // keeps the results of the benchmarks alive
+    private static int mismatches = 0;
+
+    public static void main(String[] args) {
+        String filter = args.length > 1 ? args[1] : "";
+
+        Map<String, PointSet> cases = new LinkedHashMap<String, PointSet>();
+        File[] files = new File(args[0]).listFiles((dir, name) -> name.endsWith(".txt"));
+        if (files == null)
+            throw new UncheckedIOException(new IOException("not a directory: " + args[0]));
+        Arrays.sort(files);
+        for (File file : files) {
+            cases.put(file.getName(), PointFiles.read(file.getPath()));
+        }
+        StdRandom.setSeed(2016);
+        cases.put("synthetic.parallel-lines", parallelLines(200, 20));
+        cases.put("synthetic.grid", grid(40));
+        cases.put("synthetic.huge-coordinates", hugeCoordinates(50, 5, 2000));
+        cases.put("synthetic.close-slopes", closeSlopes());
+
+        Map<String, Engine> engines = new LinkedHashMap<String, Engine>();
+        engines.put("brute", points -> new BruteCollinearPoints(points.points()).segments());
+        engines.put("fast", points -> new FastCollinearPoints(points.points()).segments());
+        engines.put("fast.parallel", points -> new FastCollinearPoints(points.points(), true).segments());
+        engines.put("hash", points -> new HashCollinearPoints(points.points()).segments());
+        engines.put("hough", points -> {
+            ArrayList<LineSegment> segments = new ArrayList<LineSegment>();
+            HoughCollinearPoints.find(points, (p, q, count) ->
+                    segments.add(new LineSegment(points.point(p), points.point(q))));
+            return segments.toArray(new LineSegment[segments.size()]);
+        });
+        engines.put("incremental", points -> {
+            IncrementalCollinearPoints collinear = new IncrementalCollinearPoints();
+            for (int i = 0; i < points.size(); ++i) {
+                collinear.add(points.x(i), points.y(i), null);
+            }
+            return collinear.segments();
+        });
+        engines.put("external", CollinearBenchmark::external);
+
+        StdOut.printf("%-50s %12s %12s %14s %14s\n", "benchmark", "ms/op", "+-", "bytes/op", "compares/op");
+        for (Map.Entry<String, PointSet> c : cases.entrySet()) {
+            String name = c.getKey();
+            PointSet points = c.getValue();
+            if (!name.contains(filter))
+                continue;
+
+            check(name, points, engines);
+            for (Map.Entry<String, Engine> e : engines.entrySet()) {
+                if (e.getKey().equals("brute") && points.size() > BRUTE_LIMIT)
+                    continue;
+                Engine engine = e.getValue();
+                measure(e.getKey() + " " + name, null, () -> {
+                    try {
+                        return engine.segments(points).length;
+                    } catch (IllegalArgumentException ex) {
+                        return -1;
+                    }
+                });
+            }
+            if (points.size() <= BRUTE_LIMIT) {
+                long[] compares = new long[1];
+                measure("slopeOrder-sort " + name, compares, () -> slopeOrderSort(points, compares));
+            }
+        }
+        StdOut.println(mismatches + " mismatches, checksum " + sink);
+    }
+
+    // compares the segments of every engine with those of the reference
+    private static void check(String name, PointSet points, Map<String, Engine> engines) {
+        String[] expected = found(engines.get(REFERENCE), points);
+        for (Map.Entry<String, Engine> e : engines.entrySet()) {
+            if (e.getKey().equals(REFERENCE) || (e.getKey().equals("brute") && points.size() > BRUTE_LIMIT))
+                continue;
+            String[] found = found(e.getValue(), points);
+            if (!Arrays.equals(expected, found)) {
+                mismatches++;
+                StdOut.printf("MISMATCH %s: %s found %d segments, %s found %d\n", name, e.getKey(), found.length,
+                        REFERENCE, expected.length);
+            }
+        }
+    }
+
+    // the sorted segments an engine finds, as strings
+    private static String[] found(Engine engine, PointSet points) {
+        try {
+            LineSegment[] segments = engine.segments(points);
+            String[] found = new String[segments.length];
+            for (int i = 0; i < segments.length; ++i) {
+                found[i] = segments[i].toString();
+            }
+            Arrays.sort(found);
+            return found;
+        } catch (IllegalArgumentException e) {
+            return new String[] { "rejected" };
+        }
+    }
+
+    // runs a benchmark and prints its time and allocation per run, along
+    // with the comparator calls it counted, if any
+    private static void measure(String name, long[] compares, Benchmark benchmark) {
+        for (int i = 0; i < WARMUP_ITERATIONS; ++i) {
+            sink += benchmark.run();
+        }
+
+        double[] millis = new double[MEASURED_ITERATIONS];
+        long allocated = THREADS.getCurrentThreadAllocatedBytes();
+        if (compares != null)
+            compares[0] = 0;
+        for (int i = 0; i < MEASURED_ITERATIONS; ++i) {
+            long start = System.nanoTime();
+            sink += benchmark.run();
+            millis[i] = (System.nanoTime() - start) / 1e6;
+        }
+        allocated = THREADS.getCurrentThreadAllocatedBytes() - allocated;
+
+        StdOut.printf("%-50s %12.2f %12.2f %14d %14s\n", name, StdStats.mean(millis), StdStats.stddev(millis),
+                allocated / MEASURED_ITERATIONS,
+                compares == null ? "-" : Long.toString(compares[0] / MEASURED_ITERATIONS));
+    }
+
+    // one benchmark, run() returns a value depending on all of its work so the
+    // JIT cannot drop it
+    private interface Benchmark {
+        long run();
+    }
+
+    // the search FastCollinearPoints used to do, without the scan for runs,
+    // counting the calls to the slope comparator
+    private static long slopeOrderSort(PointSet points, long[] compares) {
+        Point[] sorted = points.points();
+        Arrays.sort(sorted);
+        Point[] others = new Point[sorted.length];
+        long sum = 0;
+        for (Point p : sorted) {
+            Comparator<Point> slopeOrder = p.slopeOrder();
+            Comparator<Point> counting = (a, b) -> {
+                compares[0]++;
+                return slopeOrder.compare(a, b);
+            };
+            System.arraycopy(sorted, 0, others, 0, sorted.length);
+            Arrays.sort(others, counting);
+            sum += others.length;
+        }
+        return sum;
+    }
+
+    // the external engine, through a binary copy of the points
+    private static LineSegment[] external(PointSet points) {
+        try {
+            File file = File.createTempFile("collinear", ".bin");
+            try {
+                PointFiles.writeBinary(points, file.getPath());
+                ArrayList<LineSegment> segments = new ArrayList<LineSegment>();
+                ExternalCollinearPoints.find(file.getPath(), 4, 64L << 20,
+                        (p, q, count) -> segments.add(new LineSegment(p, q)));
+                return segments.toArray(new LineSegment[segments.size()]);
+            } finally {
+                file.delete();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // the given number of parallel lines of the given number of points, all
+    // with the same slope, every point of a line sees every other line
+    private static PointSet parallelLines(int lines, int perLine) {
+        int[] xs = new int[lines * perLine];
+        int[] ys = new int[lines * perLine];
+        for (int l = 0; l < lines; ++l) {
+            for (int t = 0; t < perLine; ++t) {
+                xs[l * perLine + t] = 3 * t;
+                ys[l * perLine + t] = 5 * l + t;
+            }
+        }
+        return new PointSet(xs, ys);
+    }
+
+    // a side by side grid, with lines of every length in many directions
+    private static PointSet grid(int side) {
+        int[] xs = new int[side * side];
+        int[] ys = new int[side * side];
+        for (int i = 0; i < side * side; ++i) {
+            xs[i] = 500 * (i % side);
+            ys[i] = 500 * (i / side);
+        }
+        return new PointSet(xs, ys);
+    }
+
+    // lines of points with coordinates spread over the whole int range, among
+    // random points
+    private static PointSet hugeCoordinates(int lines, int perLine, int noise) {
+        ArrayList<long[]> points = new ArrayList<long[]>();
+        while (points.size() < lines * perLine) {
+            long x = anyInt() / 2;
+            long y = anyInt() / 2;
+            long dx = StdRandom.uniform(-(1 << 27), 1 << 27);
+            long dy = StdRandom.uniform(-(1 << 27), 1 << 27);
+            if (dx == 0 && dy == 0)
+                continue;
+            for (int t = 0; t < perLine; ++t) {
+                points.add(new long[] { x + t * dx, y + t * dy });
+            }
+        }
+        for (int i = 0; i < noise; ++i) {
+            points.add(new long[] { anyInt(), anyInt() });
+        }
+        return distinct(points);
+    }
+
+    // a random int over the whole range, made of two halves as
+    // StdRandom.uniform() cannot span it at once
+    private static long anyInt() {
+        return 65536L * StdRandom.uniform(-32768, 32768) + StdRandom.uniform(65536);
+    }
+
+    // two lines of 4 points through the same point whose slopes, 1 - 2^-30
+    // and 1 - 2^-30 - 2^-60 roughly, round to the same double
+    private static PointSet closeSlopes() {
+        ArrayList<long[]> points = new ArrayList<long[]>();
+        long x = Integer.MIN_VALUE;
+        long y = Integer.MIN_VALUE;
+        points.add(new long[] { x, y });
+        for (int t = 1; t <= 3; ++t) {
+            points.add(new long[] { x + t * (1L << 30), y + t * ((1L << 30) - 1) });
+            points.add(new long[] { x + t * ((1L << 30) - 1), y + t * ((1L << 30) - 2) });
+        }
+        return distinct(points);
+    }
+
+    // the points, without repetitions
+    private static PointSet distinct(ArrayList<long[]> points) {
+        points.sort((a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+        int[] xs = new int[points.size()];
+        int[] ys = new int[points.size()];
+        int n = 0;
+        for (int i = 0; i < points.size(); ++i) {
+            long[] p = points.get(i);
+            if (i > 0 && Arrays.equals(p, points.get(i - 1)))
+                continue;
+            xs[n] = (int) p[0];
+            ys[n] = (int) p[1];
+            n++;
+        }
+        return new PointSet(Arrays.copyOf(xs, n), Arrays.copyOf(ys, n));
+    }
+}
@@ -0,0 +1,353 @@
+/**
+ * A hash map from exact directions to the points lying in that direction from
+ * an anchor point, built on primitive arrays with open addressing and linear
+ * probing so no object is allocated per point.
+ *
+ * A direction is given as the difference (dx, dy) between two points, its
+ * sign is normalized so it points upwards (or to the right when horizontal).
+ * Two points are then on the same line through the anchor exactly when their
+ * directions have a null cross product, which is computed on 128 bits so it is
+ * exact for any pair of int coordinates. The slope dy / dx is only used as the
+ * hash: division being correctly rounded, equal directions always get the
+ * same slope, even when they are not reduced, and the rare different
+ * directions whose slopes round to the same double are told apart by the
+ * cross product. No greatest common divisor is ever computed.
+ *
+ * For every direction the map keeps the number of points added in it and the
+ * first and last index given for these points, which are the smallest and
+ * largest points when the points are added in increasing order. clear() takes
+ * constant time, so one map can be reused for every anchor. When the points
+ * cannot be added in order, a map created with key tracking also keeps the
+ * smallest and largest of the long keys given with the points, compared as
+ * unsigned numbers.
+ */
+public class DirectionMap {
+    private long[] dxs; // directions, as first given
+    private long[] dys;
+    private int[] counts; // number of points in each direction
+    private int[] firsts; // first index added in each direction
+    private int[] lasts; // last index added in each direction
+    private long[] minKeys; // smallest and largest keys in each direction,
+    private long[] maxKeys; // null without key tracking
+    private final boolean trackKeys;
+    private int[] stamps; // a slot is in use when its stamp is the generation
+    private int[] entries; // used slots, in the order they were filled
+    private int size = 0;
+    private int generation = 1;
+    private int mask;
+
+    /**
+     * Creates a map sized for the given number of directions, it grows if
+     * more are added
+     *
+     * @param expected
+     *            the expected number of directions
+     */
+    public DirectionMap(int expected) {
+        this(expected, false);
+    }
+
+    /**
+     * Creates a map sized for the given number of directions, it grows if
+     * more are added
+     *
+     * @param expected
+     *            the expected number of directions
+     * @param trackKeys
+     *            whether the map keeps the smallest and largest key of every
+     *            direction, given through add(long, long, int, long)
+     */
+    public DirectionMap(int expected, boolean trackKeys) {
+        this.trackKeys = trackKeys;
+        int capacity = Integer.highestOneBit(Math.max(4, 2 * expected - 1)) << 1;
+        allocate(capacity);
+    }
+
+    /**
+     * Removes every direction from the map in constant time
+     */
+    public void clear() {
+        size = 0;
+        generation++;
+        if (generation == 0) {
+            // the stamps wrapped around, stale slots could look used
+            java.util.Arrays.fill(stamps, 0);
+            generation = 1;
+        }
+    }
+
+    /**
+     * Adds a point in the given direction
+     *
+     * @param dx
+     *            the x difference between the point and the anchor
+     * @param dy
+     *            the y difference between the point and the anchor
+     * @param index
+     *            the index of the point
+     * @return the slot of the direction
+     * @throws IllegalArgumentException
+     *             if dx and dy are both 0, the point being the anchor
+     */
+    public int add(long dx, long dy, int index) {
+        if (dx == 0 && dy == 0)
+            throw new IllegalArgumentException();
+        if (dy < 0 || (dy == 0 && dx < 0)) {
+            dx = -dx;
+            dy = -dy;
+        }
+
+        int slot = (int) hash(dx, dy) & mask;
+        while (stamps[slot] == generation) {
+            if (sameDirection(dxs[slot], dys[slot], dx, dy)) {
+                counts[slot]++;
+                lasts[slot] = index;
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        stamps[slot] = generation;
+        dxs[slot] = dx;
+        dys[slot] = dy;
+        counts[slot] = 1;
+        firsts[slot] = index;
+        lasts[slot] = index;
+        entries[size++] = slot;
+        if (2 * size > mask) {
+            grow();
+            return find(dx, dy);
+        }
+        return slot;
+    }
+
+    /**
+     * Adds a point in the given direction along with a key, the map keeping
+     * the smallest and largest key of every direction
+     *
+     * @param dx
+     *            the x difference between the point and the anchor
+     * @param dy
+     *            the y difference between the point and the anchor
+     * @param index
+     *            the index of the point
+     * @param key
+     *            the key of the point, compared as an unsigned number
+     * @return the slot of the direction
+     * @throws IllegalArgumentException
+     *             if dx and dy are both 0, the point being the anchor
+     * @throws IllegalStateException
+     *             if the map does not track keys
+     */
+    public int add(long dx, long dy, int index, long key) {
+        if (!trackKeys)
+            throw new IllegalStateException();
+        int slot = add(dx, dy, index);
+        if (counts[slot] == 1) {
+            minKeys[slot] = key;
+            maxKeys[slot] = key;
+        } else if (Long.compareUnsigned(key, minKeys[slot]) < 0) {
+            minKeys[slot] = key;
+        } else if (Long.compareUnsigned(key, maxKeys[slot]) > 0) {
+            maxKeys[slot] = key;
+        }
+        return slot;
+    }
+
+    /**
+     * Looks a direction up without adding anything to the map
+     *
+     * @param dx
+     *            the x difference between a point and the anchor
+     * @param dy
+     *            the y difference between a point and the anchor
+     * @return the slot of the direction, or -1 if no point was added in it
+     */
+    public int find(long dx, long dy) {
+        if (dy < 0 || (dy == 0 && dx < 0)) {
+            dx = -dx;
+            dy = -dy;
+        }
+        int slot = (int) hash(dx, dy) & mask;
+        while (stamps[slot] == generation) {
+            if (sameDirection(dxs[slot], dys[slot], dx, dy))
+                return slot;
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * @return the number of directions in the map
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the number of slots, every slot is between 0 and capacity() - 1
+     *         and stays valid until the next call to add()
+     */
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * @param i
+     *            an index between 0 and size() - 1
+     * @return the slot of the i-th direction added to the map
+     */
+    public int slot(int i) {
+        return entries[i];
+    }
+
+    /**
+     * @param slot
+     *            the slot of a direction
+     * @return the number of points added in that direction
+     */
+    public int count(int slot) {
+        return counts[slot];
+    }
+
+    /**
+     * @param slot
+     *            the slot of a direction
+     * @return the first index added in that direction
+     */
+    public int first(int slot) {
+        return firsts[slot];
+    }
+
+    /**
+     * @param slot
+     *            the slot of a direction
+     * @return the last index added in that direction
+     */
+    public int last(int slot) {
+        return lasts[slot];
+    }
+
+    /**
+     * @param slot
+     *            the slot of a direction
+     * @return the smallest key added in that direction, the map must track
+     *         keys
+     */
+    public long minKey(int slot) {
+        return minKeys[slot];
+    }
+
+    /**
+     * @param slot
+     *            the slot of a direction
+     * @return the largest key added in that direction, the map must track
+     *         keys
+     */
+    public long maxKey(int slot) {
+        return maxKeys[slot];
+    }
+
+    /**
+     * @param slot
+     *            the slot of a direction
+     * @return the x component of the direction, as first given
+     */
+    public long dx(int slot) {
+        return dxs[slot];
+    }
+
+    /**
+     * @param slot
+     *            the slot of a direction
+     * @return the y component of the direction, as first given, never
+     *         negative
+     */
+    public long dy(int slot) {
+        return dys[slot];
+    }
+
+    /**
+     * returns whether two directions normalized to point upwards are the same,
+     * comparing their cross product exactly
+     *
+     * @param dx1
+     *            the x component of the first direction
+     * @param dy1
+     *            the y component of the first direction
+     * @param dx2
+     *            the x component of the second direction
+     * @param dy2
+     *            the y component of the second direction
+     * @return whether dx1 * dy2 == dx2 * dy1 on 128 bits
+     */
+    public static boolean sameDirection(long dx1, long dy1, long dx2, long dy2) {
+        return dx1 * dy2 == dx2 * dy1 && Math.multiplyHigh(dx1, dy2) == Math.multiplyHigh(dx2, dy1);
+    }
+
+    /**
+     * returns a hash of a direction normalized to point upwards, the same for
+     * all equal directions whether they are reduced or not
+     *
+     * @param dx
+     *            the x component of the direction
+     * @param dy
+     *            the y component of the direction
+     * @return the hash of the direction
+     */
+    public static long hash(long dx, long dy) {
+        // +0.0 turns the -0.0 of a horizontal direction into 0.0
+        long h = Double.doubleToLongBits((double) dy / dx + 0.0) * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 29) ^ (h >>> 47);
+    }
+
+    private void allocate(int capacity) {
+        mask = capacity - 1;
+        dxs = new long[capacity];
+        dys = new long[capacity];
+        counts = new int[capacity];
+        firsts = new int[capacity];
+        lasts = new int[capacity];
+        stamps = new int[capacity];
+        entries = new int[capacity / 2 + 1];
+        if (trackKeys) {
+            minKeys = new long[capacity];
+            maxKeys = new long[capacity];
+        }
+    }
+
+    // doubles the capacity and inserts the directions again, in their order
+    private void grow() {
+        long[] oldDxs = dxs;
+        long[] oldDys = dys;
+        int[] oldCounts = counts;
+        int[] oldFirsts = firsts;
+        int[] oldLasts = lasts;
+        long[] oldMinKeys = minKeys;
+        long[] oldMaxKeys = maxKeys;
+        int[] oldEntries = entries;
+        int oldSize = size;
+
+        allocate(2 * (mask + 1));
+        generation = 1;
+        size = 0;
+        for (int i = 0; i < oldSize; ++i) {
+            int old = oldEntries[i];
+            int slot = (int) hash(oldDxs[old], oldDys[old]) & mask;
+            while (stamps[slot] == generation) {
+                slot = (slot + 1) & mask;
+            }
+            stamps[slot] = generation;
+            dxs[slot] = oldDxs[old];
+            dys[slot] = oldDys[old];
+            counts[slot] = oldCounts[old];
+            firsts[slot] = oldFirsts[old];
+            lasts[slot] = oldLasts[old];
+            if (trackKeys) {
+                minKeys[slot] = oldMinKeys[old];
+                maxKeys[slot] = oldMaxKeys[old];
+            }
+            entries[size++] = slot;
+        }
+    }
+}
@@ -0,0 +1,240 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import edu.princeton.cs.algs4.StdOut;
+
+/**
+ * Finds the maximal line segments of a point set too large for the heap. The
+ * points stay in a binary point file (see PointFiles) which is memory mapped
+ * and scanned window by window, and the segments are handed to a sink, or
+ * written to a file, as they are found, so no array of the points or of the
+ * segments is ever built.
+ *
+ * Every anchor groups the other points by exact direction in a DirectionMap,
+ * keeping the smallest and largest point of every direction, and reports a
+ * line of enough points when the anchor is its smallest point, as
+ * HashCollinearPoints does on a sorted array. The points are not sorted here,
+ * the smallest and largest points are compared by their natural order keys.
+ * Anchors are processed in blocks, every scan of the file feeding the maps of
+ * a whole block. When one map per anchor of the block would exceed the
+ * budget even for a block of a single anchor, the directions are split into
+ * partitions by their hash and the file is scanned once per partition, the
+ * maps only holding the directions of the current partition. The maps are
+ * allocated once and reused for every partition and every block.
+ *
+ * The budget sizes the maps, it does not cap them: the partitions and the
+ * block are chosen so that maps holding the expected number of directions of
+ * a partition fit in it, with a quarter to spare. A map still grows when more
+ * directions fall in its partition, as when an anchor sees most points in
+ * distinct directions that hash unevenly, and a grown map stays grown for the
+ * following blocks, so such inputs can use more memory than the budget.
+ */
+public class ExternalCollinearPoints {
+    private static final long WINDOW_POINTS = 1L << 25; // points mapped at once
+    // bytes of a map per expected direction: 56 bytes per slot and 2 to 4
+    // slots per direction
+    private static final long BYTES_PER_DIRECTION = 224;
+
+    /**
+     * Finds all maximal line segments of at least minPoints points of a
+     * binary point file and hands them to a sink, in no particular order
+     *
+     * @param pointFile
+     *            the name of a binary point file
+     * @param minPoints
+     *            the smallest number of points of a reported segment
+     * @param memoryBudget
+     *            the number of bytes the direction maps are sized for, they
+     *            may grow past it on unevenly hashed partitions
+     * @param sink
+     *            receives the segments
+     * @throws IllegalArgumentException
+     *             if two points have the same value, minPoints is less than 2,
+     *             the budget is not positive or the file is not a binary point
+     *             file
+     * @throws UncheckedIOException
+     *             if the file cannot be read
+     */
+    public static void find(String pointFile, int minPoints, long memoryBudget, SegmentSink sink) {
+        if (sink == null)
+            throw new NullPointerException();
+        if (minPoints < 2 || memoryBudget <= 0)
+            throw new IllegalArgumentException();
+
+        try (FileChannel channel = FileChannel.open(Paths.get(pointFile), StandardOpenOption.READ)) {
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, PointFiles.HEADER_SIZE);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt(0) != PointFiles.MAGIC)
+                throw new IllegalArgumentException("not a binary point file");
+            int n = header.getInt(4);
+            if (n < 0 || channel.size() < PointFiles.HEADER_SIZE + 8L * n)
+                throw new IllegalArgumentException("truncated point file");
+            if (n < minPoints)
+                return;
+
+            // a map for every anchor of a block, each holding the directions
+            // of a partition, a quarter more than the average leaves room for
+            // uneven partitions
+            long perAnchor = BYTES_PER_DIRECTION * n;
+            int partitions = (int) Math.max(1, Math.min(1 << 20, (perAnchor + memoryBudget - 1) / memoryBudget));
+            int expected = (int) Math.min(n, n / partitions + n / (4L * partitions) + 16);
+            int block = (int) Math.max(1, Math.min(n, memoryBudget / (BYTES_PER_DIRECTION * expected)));
+            DirectionMap[] maps = new DirectionMap[block];
+            for (int a = 0; a < block; ++a) {
+                maps[a] = new DirectionMap(expected, true);
+            }
+
+            long[] anchorKeys = new long[block];
+            for (int first = 0; first < n; first += block) {
+                int anchors = Math.min(block, n - first);
+                for (int a = 0; a < anchors; ++a) {
+                    anchorKeys[a] = key(point(channel, first + a));
+                }
+                for (int partition = 0; partition < partitions; ++partition) {
+                    for (int a = 0; a < anchors; ++a) {
+                        maps[a].clear();
+                    }
+                    scan(channel, n, first, anchors, anchorKeys, partition, partitions, maps);
+                    for (int a = 0; a < anchors; ++a) {
+                        emit(maps[a], anchorKeys[a], minPoints, sink);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Finds all maximal line segments of at least minPoints points of a
+     * binary point file and writes them to a text file, one per line
+     *
+     * @param pointFile
+     *            the name of a binary point file
+     * @param segmentFile
+     *            the name of the file the segments are written to
+     * @param minPoints
+     *            the smallest number of points of a reported segment
+     * @param memoryBudget
+     *            the number of bytes the direction maps are sized for, they
+     *            may grow past it on unevenly hashed partitions
+     * @return the number of segments found
+     * @throws IllegalArgumentException
+     *             if two points have the same value, minPoints is less than 2,
+     *             the budget is not positive or the file is not a binary point
+     *             file
+     * @throws UncheckedIOException
+     *             if a file cannot be read or written
+     */
+    public static long find(String pointFile, String segmentFile, int minPoints, long memoryBudget) {
+        long[] found = new long[1];
+        try (BufferedWriter out = Files.newBufferedWriter(Paths.get(segmentFile), StandardCharsets.US_ASCII)) {
+            find(pointFile, minPoints, memoryBudget, (p, q, count) -> {
+                try {
+                    out.write(new LineSegment(p, q).toString());
+                    out.newLine();
+                    found[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return found[0];
+    }
+
+    // feeds the maps of a block of anchors with the points of the file whose
+    // direction from the anchor falls in the partition
+    private static void scan(FileChannel channel, int n, int first, int anchors, long[] anchorKeys,
+            int partition, int partitions, DirectionMap[] maps) throws IOException {
+        for (long start = 0; start < n; start += WINDOW_POINTS) {
+            int count = (int) Math.min(WINDOW_POINTS, n - start);
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY,
+                    PointFiles.HEADER_SIZE + 8 * start, 8L * count);
+            window.order(ByteOrder.LITTLE_ENDIAN);
+            for (int k = 0; k < count; ++k) {
+                int j = (int) (start + k);
+                long x = window.getInt(8 * k);
+                long y = window.getInt(8 * k + 4);
+                long key = key(x, y);
+                for (int a = 0; a < anchors; ++a) {
+                    if (j == first + a)
+                        continue;
+                    long dx = x - x(anchorKeys[a]);
+                    long dy = y - y(anchorKeys[a]);
+                    if (dx == 0 && dy == 0)
+                        throw new IllegalArgumentException();
+                    if (partitions > 1) {
+                        // the hash needs the direction pointing upwards
+                        long h = dy < 0 || (dy == 0 && dx < 0) ? DirectionMap.hash(-dx, -dy)
+                                : DirectionMap.hash(dx, dy);
+                        if (Long.remainderUnsigned(h, partitions) != partition)
+                            continue;
+                    }
+                    maps[a].add(dx, dy, j, key);
+                }
+            }
+        }
+    }
+
+    // reports the lines whose smallest point is the anchor
+    private static void emit(DirectionMap map, long anchorKey, int minPoints, SegmentSink sink) {
+        for (int e = 0; e < map.size(); ++e) {
+            int slot = map.slot(e);
+            if (map.count(slot) >= minPoints - 1 && Long.compareUnsigned(anchorKey, map.minKey(slot)) < 0) {
+                long last = map.maxKey(slot);
+                sink.segment(new Point(x(anchorKey), y(anchorKey)), new Point(x(last), y(last)), map.count(slot) + 1);
+            }
+        }
+    }
+
+    private static long[] point(FileChannel channel, int i) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, PointFiles.HEADER_SIZE + 8L * i + buffer.position()) < 0)
+                throw new IllegalArgumentException("truncated point file");
+        }
+        return new long[] { buffer.getInt(0), buffer.getInt(4) };
+    }
+
+    // the natural order key of a point, as in PointSet.naturalOrder(), it
+    // also holds the coordinates of the point
+    private static long key(long[] point) {
+        return key(point[0], point[1]);
+    }
+
+    private static long key(long x, long y) {
+        return ((y ^ Integer.MIN_VALUE) & 0xFFFFFFFFL) << 32 | (x ^ Integer.MIN_VALUE) & 0xFFFFFFFFL;
+    }
+
+    private static int x(long key) {
+        return (int) key ^ Integer.MIN_VALUE;
+    }
+
+    private static int y(long key) {
+        return (int) (key >>> 32) ^ Integer.MIN_VALUE;
+    }
+
+    /**
+     * Writes the segments of a binary point file to a text file
+     *
+     * Execution: java ExternalCollinearPoints points.bin segments.txt
+     *            [budgetMB] [minPoints]
+     */
+    public static void main(String[] args) {
+        long budget = (args.length > 2 ? Long.parseLong(args[2]) : 256) << 20;
+        int minPoints = args.length > 3 ? Integer.parseInt(args[3]) : 4;
+        long found = find(args[0], args[1], minPoints, budget);
+        StdOut.println(found + " segments");
+    }
+}
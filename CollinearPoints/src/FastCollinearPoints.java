@@ -1,8 +1,8 @@
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
-import edu.princeton.cs.algs4.In;
 import edu.princeton.cs.algs4.StdDraw;
 import edu.princeton.cs.algs4.StdOut;
 
@@ -12,10 +12,30 @@ import edu.princeton.cs.algs4.StdOut;
  * examining every point and then sorting all other points with respect to the
  * slope they make with it, to find a line segment, we find 3 or more adjacent
  * points making the same slope with the examined point..
+ *
+ * The slope of every point with the examined point is computed only once and
+ * kept as a primitive key, the points are then ordered by sorting an index
+ * permutation on these keys with SlopeRadixSort instead of sorting the points
+ * with a comparator that recomputes the slopes on every comparison.
+ *
+ * Examining a point does not modify the sorted array of points, so in
+ * parallel mode the points are examined by a fork join pool and the segments
+ * are gathered in point order afterwards, giving exactly the output of the
+ * sequential search. Scratch arrays belong to a subtree of the tasks, only a
+ * task stolen by another thread allocates its own, so no thread keeps them
+ * once the search is over.
+ *
+ * A segment is only reported from its smallest point, the examined point
+ * being the smallest of a run when no point before it makes the same slope
+ * with it, so no set of the segments found so far is needed and find() can
+ * stream segments to a SegmentSink without keeping them.
+ *
+ * The search itself works on a PointSet, scanning sorted copies of its
+ * coordinate arrays and reporting segments as index pairs to an
+ * IndexSegmentSink, the Point[] methods are built on top of it.
  */
 public class FastCollinearPoints {
     private ArrayList<LineSegment> segments = null;
-    private HashSet<SlopePointPair> addedSegments = new HashSet<SlopePointPair>();
 
     /**
      * Finds all line segments containing 4 points
@@ -30,47 +50,188 @@ public class FastCollinearPoints {
      *             if two points have the same value
      */
     public FastCollinearPoints(Point[] thePoints) {
+        this(thePoints, false);
+    }
 
-        if (thePoints == null)
-            throw new NullPointerException();
+    /**
+     * Finds all line segments containing 4 points, optionally examining the
+     * points in parallel
+     * 
+     * @param points
+     *            The set of coplanar points in which to find the line segments
+     * @param parallel
+     *            whether the points are examined in parallel on the common
+     *            fork join pool, the segments found and their order are the
+     *            same either way
+     * @throws NullPointerException
+     *             if the argument of the constructor is null
+     * @throws NullPointerException
+     *             if any of the points in the input array is null
+     * @throws IllegalArgumentException
+     *             if two points have the same value
+     */
+    public FastCollinearPoints(Point[] thePoints, boolean parallel) {
+        this(thePoints, parallel, 4);
+    }
+
+    /**
+     * Finds all maximal line segments containing at least minPoints points,
+     * optionally examining the points in parallel
+     * 
+     * @param points
+     *            The set of coplanar points in which to find the line segments
+     * @param parallel
+     *            whether the points are examined in parallel on the common
+     *            fork join pool
+     * @param minPoints
+     *            the smallest number of points of a reported segment
+     * @throws NullPointerException
+     *             if the argument of the constructor is null
+     * @throws NullPointerException
+     *             if any of the points in the input array is null
+     * @throws IllegalArgumentException
+     *             if two points have the same value or minPoints is less
+     *             than 2
+     */
+    public FastCollinearPoints(Point[] thePoints, boolean parallel, int minPoints) {
         segments = new ArrayList<LineSegment>();
+        find(thePoints, parallel, minPoints, (p, q, count) -> segments.add(new LineSegment(p, q)));
+    }
+
+    /**
+     * Finds all line segments containing 4 points and hands them to a sink
+     * as soon as they are found instead of keeping them, every segment is
+     * found once, from its smallest point, and the segments come in the order
+     * of their smallest points
+     * 
+     * @param thePoints
+     *            The set of coplanar points in which to find the line segments
+     * @param parallel
+     *            whether the points are examined in parallel on the common
+     *            fork join pool, the segments are handed to the sink in the
+     *            same order either way but only once all points are examined
+     * @param sink
+     *            receives the segments, on the calling thread
+     * @throws NullPointerException
+     *             if the points or the sink are null
+     * @throws NullPointerException
+     *             if any of the points in the input array is null
+     * @throws IllegalArgumentException
+     *             if two points have the same value
+     */
+    public static void find(Point[] thePoints, boolean parallel, SegmentSink sink) {
+        find(thePoints, parallel, 4, sink);
+    }
+
+    /**
+     * Finds all maximal line segments containing at least minPoints points
+     * and hands them to a sink, as find(Point[], boolean, SegmentSink) does
+     * for segments of 4 points
+     * 
+     * @param thePoints
+     *            The set of coplanar points in which to find the line segments
+     * @param parallel
+     *            whether the points are examined in parallel on the common
+     *            fork join pool
+     * @param minPoints
+     *            the smallest number of points of a reported segment
+     * @param sink
+     *            receives the segments, on the calling thread
+     * @throws NullPointerException
+     *             if the points or the sink are null
+     * @throws NullPointerException
+     *             if any of the points in the input array is null
+     * @throws IllegalArgumentException
+     *             if two points have the same value or minPoints is less
+     *             than 2
+     */
+    public static void find(Point[] thePoints, boolean parallel, int minPoints, SegmentSink sink) {
+        if (thePoints == null || sink == null)
+            throw new NullPointerException();
         Point[] points = Arrays.copyOf(thePoints, thePoints.length);
-        if (points.length < 4)
+        find(new PointSet(points), parallel, minPoints,
+                (p, q, count) -> sink.segment(points[p], points[q], count));
+    }
+
+    /**
+     * Finds all line segments containing 4 points of a PointSet and hands
+     * them to a sink as index pairs, as find(Point[], boolean, SegmentSink)
+     * does for an array of points
+     * 
+     * @param points
+     *            The set of coplanar points in which to find the line segments
+     * @param parallel
+     *            whether the points are examined in parallel on the common
+     *            fork join pool
+     * @param sink
+     *            receives the segments, on the calling thread
+     * @throws NullPointerException
+     *             if the points or the sink are null
+     * @throws IllegalArgumentException
+     *             if two points have the same value
+     */
+    public static void find(PointSet points, boolean parallel, IndexSegmentSink sink) {
+        find(points, parallel, 4, sink);
+    }
+
+    /**
+     * Finds all maximal line segments containing at least minPoints points of
+     * a PointSet and hands them to a sink as index pairs
+     * 
+     * @param points
+     *            The set of coplanar points in which to find the line segments
+     * @param parallel
+     *            whether the points are examined in parallel on the common
+     *            fork join pool
+     * @param minPoints
+     *            the smallest number of points of a reported segment
+     * @param sink
+     *            receives the segments, on the calling thread
+     * @throws NullPointerException
+     *             if the points or the sink are null
+     * @throws IllegalArgumentException
+     *             if two points have the same value or minPoints is less
+     *             than 2
+     */
+    public static void find(PointSet points, boolean parallel, int minPoints, IndexSegmentSink sink) {
+        if (points == null || sink == null)
+            throw new NullPointerException();
+        if (minPoints < 2)
+            throw new IllegalArgumentException();
+
+        // sorting once puts equal points next to each other, and every suffix
+        // stays in natural order for the rest of the search. The sorted
+        // coordinates are copied so the search scans contiguous arrays
+        int n = points.size();
+        int[] order = points.naturalOrder();
+        int[] xs = new int[n];
+        int[] ys = new int[n];
+        for (int i = 0; i < n; ++i) {
+            xs[i] = points.x(order[i]);
+            ys[i] = points.y(order[i]);
+        }
+        for (int i = 0; i < n - 1; ++i) {
+            if (xs[i] == xs[i + 1] && ys[i] == ys[i + 1])
+                throw new IllegalArgumentException();
+        }
+        if (n < minPoints)
             return;
 
-        for (int i = 0; i < points.length - 1; ++i) {
-            Arrays.sort(points, i, points.length);
-            Arrays.sort(points, i + 1, points.length, points[i].slopeOrder());
-            int pointsCount = 1; // we seek 3 equal slope points
-            // we examine each element of the remaining array with the element
-            // right next to it
-            int lastIndex = points.length - 2; // the last index to be examined
-                                               // is the one before the last so
-                                               // we don't go out of bounds
-            for (int j = i + 1; j <= lastIndex; ++j) {
-                if (equalSlopes(points[i], points[j], points[i], points[j + 1])) {
-                    pointsCount++;
-                    if (j == lastIndex) {
-                        if (pointsCount >= 3) {
-                            // we have a line segment, but the question is, last
-                            // point included?
-                            if (equalSlopes(points[i], points[lastIndex], points[i], points[lastIndex + 1])) {
-                                addLineSegment(points[i], points[lastIndex + 1]);
-                            } else {
-                                addLineSegment(points[i], points[lastIndex]);
-                            }
-                        }
-                    }
-                } else {
-                    // see how many previous points had the same slope with the
-                    // first points
-                    if (pointsCount >= 3) {
-                        // we have j pointing to the last point in the line
-                        addLineSegment(points[i], points[j]);
-                    }
-                    pointsCount = 1; // reset the counter
-                }
+        if (!parallel) {
+            Scratch scratch = new Scratch(n, minPoints);
+            for (int i = 0; i <= n - minPoints; ++i) {
+                emit(order, i, examine(xs, ys, i, scratch), sink);
             }
+            return;
+        }
+
+        // ends[i] holds the segments found from the i-th point, examining a
+        // point only reads the sorted coordinates so the points can be
+        // examined in any order, the segments are then handed over in order
+        int[][] ends = new int[n - minPoints + 1][];
+        ForkJoinPool.commonPool().invoke(new ExamineTask(xs, ys, ends, 0, ends.length, minPoints));
+        for (int i = 0; i < ends.length; ++i) {
+            emit(order, i, ends[i], sink);
         }
     }
 
@@ -92,21 +253,26 @@ public class FastCollinearPoints {
      */
     public LineSegment[] segments() {
         LineSegment[] a = new LineSegment[segments.size()];
-        return (LineSegment[]) segments.toArray(a);
+        return segments.toArray(a);
 
     }
 
     public static void main(String[] args) {
 
         // read the N points from a file
-        In in = new In(args[0]);
-        int N = in.readInt();
-        Point[] points = new Point[N];
-        for (int i = 0; i < N; i++) {
-            int x = in.readInt();
-            int y = in.readInt();
-            points[i] = new Point(x, y);
+        PointSet set = PointFiles.read(args[0]);
+        if (args.length > 1) {
+            // no screen needed, draw to the PNG file given instead
+            PointsRenderer renderer = new PointsRenderer(set, 1024, 1024);
+            renderer.drawPoints();
+            find(set, false, (p, q, count) -> {
+                StdOut.println(new LineSegment(set.point(p), set.point(q)));
+                renderer.segment(p, q, count);
+            });
+            renderer.write(args[1]);
+            return;
         }
+        Point[] points = set.points();
 
         // draw the points
         StdDraw.show(0);
@@ -117,72 +283,167 @@ public class FastCollinearPoints {
         }
         StdDraw.show();
 
-        // print and draw the line segments
-        FastCollinearPoints collinear = new FastCollinearPoints(points);
-        for (LineSegment segment : collinear.segments()) {
+        // print and draw the line segments as they are found
+        find(points, false, (p, q, count) -> {
+            LineSegment segment = new LineSegment(p, q);
             StdOut.println(segment);
             segment.draw();
-        }
+        });
 
         StdOut.println("Done!");
     }
 
-    private class SlopePointPair {
-        private Point point;
-        private Double slope;
+    // scratch arrays for examining points, one per sequential search or per
+    // stolen ExamineTask
+    private static final class Scratch {
+        private final SlopeRadixSort sorter = new SlopeRadixSort();
+        private final int minRun; // points making a segment with the anchor
+        private final long[] keys;
+        private final int[] ends; // last point and size of every run
+        private final long[] runKeys; // slope key of every run
+        private final boolean[] blocked; // whether a run has smaller points
 
-        SlopePointPair(Point apoint, Double aslope) {
-            point = apoint;
-            slope = aslope;
+        Scratch(int n, int minPoints) {
+            minRun = minPoints - 1;
+            keys = new long[n];
+            ends = new int[2 * (n / minRun + 1)];
+            runKeys = new long[n / minRun + 1];
+            blocked = new boolean[n / minRun + 1];
         }
+    }
 
-        @Override
-        public boolean equals(Object other) {
-            SlopePointPair otherPair = (SlopePointPair) other;
-            if (this.point == otherPair.point && this.slope.equals(otherPair.slope)) {
-                return true;
-            }
-            return false;
+    // examines the points of a range of indices, splitting it between the
+    // threads of the pool
+    private static final class ExamineTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private static final int GRAIN = 16; // points examined by one task
+
+        private final int[] xs;
+        private final int[] ys;
+        private final int[][] ends;
+        private final int from;
+        private final int to;
+        private final int minPoints;
+
+        ExamineTask(int[] xs, int[] ys, int[][] ends, int from, int to, int minPoints) {
+            this.xs = xs;
+            this.ys = ys;
+            this.ends = ends;
+            this.from = from;
+            this.to = to;
+            this.minPoints = minPoints;
         }
-        
+
         @Override
-        public int hashCode() {
-            int hash = 3;
-            hash = 53 * hash + point.toString().hashCode();
-            hash = 53 * hash + slope.hashCode();
-            return hash;
+        protected void compute() {
+            examine(from, to, new Scratch(xs.length, minPoints));
+        }
+
+        // the second half of a range is forked for other threads to steal, if
+        // no one did it is examined here with the same scratch arrays
+        private void examine(int from, int to, Scratch scratch) {
+            if (to - from <= GRAIN) {
+                for (int i = from; i < to; ++i) {
+                    ends[i] = FastCollinearPoints.examine(xs, ys, i, scratch);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            ExamineTask second = new ExamineTask(xs, ys, ends, middle, to, minPoints);
+            second.fork();
+            examine(from, middle, scratch);
+            if (second.tryUnfork())
+                examine(middle, to, scratch);
+            else
+                second.join();
         }
     }
 
-    private void addLineSegment(Point p1, Point p2) {
-        if (p1.compareTo(p2) == 0)
-            throw new IllegalArgumentException();
-        if (!isLineSegmentPresent(p1, p2))
-            segments.add(new LineSegment(p1, p2));
+    // finds the maximal segments of at least minRun + 1 points starting at
+    // the i-th sorted point. Returns the last point and the point count of
+    // each, in slope order, or null if there is none
+    private static int[] examine(int[] xs, int[] ys, int i, Scratch scratch) {
+        // every slope with the examined point is computed exactly once,
+        // key j belongs to the point i + 1 + j
+        long[] keys = scratch.keys;
+        int x = xs[i];
+        int y = ys[i];
+        int count = xs.length - i - 1;
+        for (int j = 0; j < count; ++j) {
+            keys[j] = SlopeRadixSort.key(PointSet.slope(x, y, xs[i + 1 + j], ys[i + 1 + j]));
+        }
+        int[] order = scratch.sorter.sort(keys, count);
 
-    }
+        // look for runs of minRun or more equal slopes, the sort being stable
+        // the last point of a run is the largest one
+        int runs = 0;
+        int runStart = 0;
+        for (int j = 1; j <= count; ++j) {
+            if (j == count || keys[order[j]] != keys[order[runStart]]) {
+                if (j - runStart >= scratch.minRun) {
+                    scratch.runKeys[runs] = keys[order[runStart]];
+                    scratch.blocked[runs] = false;
+                    scratch.ends[2 * runs] = i + 1 + order[j - 1];
+                    scratch.ends[2 * runs + 1] = j - runStart + 1;
+                    runs++;
+                }
+                runStart = j;
+            }
+        }
+        if (runs == 0)
+            return null;
 
-    private boolean isLineSegmentPresent(Point p1, Point p2) {
-        Double slope = p1.slopeTo(p2);
-        SlopePointPair pair = new SlopePointPair(p2, slope);
-        if (addedSegments.contains(pair)) {
-            return true;
+        // a run on the same line as a point before the i-th one is part of a
+        // segment found from that point, runs being rare the points before
+        // are only looked at when there is one, the run keys are in unsigned
+        // order so they can be searched by bisection
+        int found = runs;
+        for (int j = 0; j < i && found > 0; ++j) {
+            long key = SlopeRadixSort.key(PointSet.slope(x, y, xs[j], ys[j]));
+            int run = search(scratch.runKeys, runs, key);
+            if (run >= 0 && !scratch.blocked[run]) {
+                scratch.blocked[run] = true;
+                found--;
+            }
         }
+        if (found == 0)
+            return null;
 
-        addedSegments.add(pair);
-        return false;
+        int[] segments = new int[2 * found];
+        int k = 0;
+        for (int run = 0; run < runs; ++run) {
+            if (!scratch.blocked[run]) {
+                segments[k++] = scratch.ends[2 * run];
+                segments[k++] = scratch.ends[2 * run + 1];
+            }
+        }
+        return segments;
     }
 
-    private boolean equalSlopes(Point a, Point b, Point c, Point d) {
-        double slope1 = a.slopeTo(b);
-        double slope2 = c.slopeTo(d);
-
-        if (slope1 == Double.NEGATIVE_INFINITY || slope2 == Double.NEGATIVE_INFINITY) {
-            throw new IllegalArgumentException();
+    // the index of key among the first n keys sorted in unsigned order, or -1
+    private static int search(long[] keys, int n, long key) {
+        int lo = 0;
+        int hi = n - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int c = Long.compareUnsigned(keys[mid], key);
+            if (c < 0)
+                lo = mid + 1;
+            else if (c > 0)
+                hi = mid - 1;
+            else
+                return mid;
         }
-        if (slope1 == slope2) {
-            return true;
+        return -1;
+    }
+
+    // hands the segments found from the i-th point to the sink, translating
+    // sorted positions back to indices of the set
+    private static void emit(int[] order, int i, int[] segments, IndexSegmentSink sink) {
+        if (segments == null)
+            return;
+        for (int k = 0; k < segments.length; k += 2) {
+            sink.segment(order[i], order[segments[k]], segments[k + 1]);
         }
-        return false;
     }
 }
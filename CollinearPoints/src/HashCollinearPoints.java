@@ -0,0 +1,200 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import edu.princeton.cs.algs4.StdOut;
+
+/**
+ * This class examines a set of planar points and then computes the maximal line
+ * segments consisting of 4 points or more, like FastCollinearPoints, but
+ * without sorting. For every point, all other points are grouped in a
+ * DirectionMap by the exact direction they make with it, which takes
+ * expected linear time, so the whole search takes expected quadratic time
+ * instead of n^2 log n.
+ *
+ * The points are first sorted in natural order, a segment is then reported by
+ * its smallest point only: when 3 or more of the following points lie in the
+ * same direction from the examined point and no point before it lies on that
+ * line, the examined point and the last point in that direction are the
+ * endpoints of a maximal segment. Since directions are compared exactly,
+ * different lines with huge coordinates are never merged because their
+ * floating point slopes round to the same double.
+ *
+ * Like FastCollinearPoints, the search works on the coordinate arrays of a
+ * PointSet and reports index pairs, the Point[] constructor is built on it.
+ */
+public class HashCollinearPoints {
+    private ArrayList<LineSegment> segments = null;
+
+    /**
+     * Finds all line segments containing 4 points
+     *
+     * @param thePoints
+     *            The set of coplanar points in which to find the line segments
+     * @throws NullPointerException
+     *             if the argument of the constructor is null
+     * @throws NullPointerException
+     *             if any of the points in the input array is null
+     * @throws IllegalArgumentException
+     *             if two points have the same value
+     */
+    public HashCollinearPoints(Point[] thePoints) {
+        this(thePoints, 4);
+    }
+
+    /**
+     * Finds all maximal line segments containing at least minPoints points
+     *
+     * @param thePoints
+     *            The set of coplanar points in which to find the line segments
+     * @param minPoints
+     *            the smallest number of points of a reported segment
+     * @throws NullPointerException
+     *             if the argument of the constructor is null
+     * @throws NullPointerException
+     *             if any of the points in the input array is null
+     * @throws IllegalArgumentException
+     *             if two points have the same value or minPoints is less
+     *             than 2
+     */
+    public HashCollinearPoints(Point[] thePoints, int minPoints) {
+        if (thePoints == null)
+            throw new NullPointerException();
+        segments = new ArrayList<LineSegment>();
+        Point[] points = Arrays.copyOf(thePoints, thePoints.length);
+        find(new PointSet(points), minPoints,
+                (p, q, count) -> segments.add(new LineSegment(points[p], points[q])));
+    }
+
+    /**
+     * Finds all line segments containing 4 points of a PointSet and hands
+     * them to a sink as index pairs, in the natural order of their smallest
+     * points
+     *
+     * @param points
+     *            The set of coplanar points in which to find the line segments
+     * @param sink
+     *            receives the segments
+     * @throws NullPointerException
+     *             if the points or the sink are null
+     * @throws IllegalArgumentException
+     *             if two points have the same value
+     */
+    public static void find(PointSet points, IndexSegmentSink sink) {
+        find(points, 4, sink);
+    }
+
+    /**
+     * Finds all maximal line segments containing at least minPoints points of
+     * a PointSet and hands them to a sink as index pairs
+     *
+     * @param points
+     *            The set of coplanar points in which to find the line segments
+     * @param minPoints
+     *            the smallest number of points of a reported segment
+     * @param sink
+     *            receives the segments
+     * @throws NullPointerException
+     *             if the points or the sink are null
+     * @throws IllegalArgumentException
+     *             if two points have the same value or minPoints is less
+     *             than 2
+     */
+    public static void find(PointSet points, int minPoints, IndexSegmentSink sink) {
+        if (points == null || sink == null)
+            throw new NullPointerException();
+        if (minPoints < 2)
+            throw new IllegalArgumentException();
+
+        int n = points.size();
+        int[] order = points.naturalOrder();
+        long[] xs = new long[n];
+        long[] ys = new long[n];
+        for (int i = 0; i < n; ++i) {
+            xs[i] = points.x(order[i]);
+            ys[i] = points.y(order[i]);
+        }
+        for (int i = 0; i < n - 1; ++i) {
+            if (xs[i] == xs[i + 1] && ys[i] == ys[i + 1])
+                throw new IllegalArgumentException();
+        }
+        if (n < minPoints)
+            return;
+
+        DirectionMap directions = new DirectionMap(n);
+        int[] candidates = new int[n];
+        int[] blockedBy = new int[0]; // blockedBy[slot] == i if a point
+                                      // before the i-th lies on that line
+        for (int i = 0; i <= n - minPoints; ++i) {
+            directions.clear();
+            // points are added in increasing order, so the last index of a
+            // direction is its largest point
+            for (int j = i + 1; j < n; ++j) {
+                directions.add(xs[j] - xs[i], ys[j] - ys[i], j);
+            }
+
+            int candidateCount = 0;
+            for (int e = 0; e < directions.size(); ++e) {
+                int slot = directions.slot(e);
+                if (directions.count(slot) >= minPoints - 1) {
+                    candidates[candidateCount++] = slot;
+                }
+            }
+            if (candidateCount == 0)
+                continue;
+
+            // a line also holding a point smaller than the i-th one was
+            // already reported from its smallest point, which is rare enough
+            // that the smaller points are only looked at when there is a
+            // candidate
+            if (blockedBy.length < directions.capacity()) {
+                blockedBy = new int[directions.capacity()];
+                Arrays.fill(blockedBy, -1);
+            }
+            for (int j = 0; j < i; ++j) {
+                int slot = directions.find(xs[j] - xs[i], ys[j] - ys[i]);
+                if (slot >= 0) {
+                    blockedBy[slot] = i;
+                }
+            }
+            for (int c = 0; c < candidateCount; ++c) {
+                int slot = candidates[c];
+                if (blockedBy[slot] != i) {
+                    sink.segment(order[i], order[directions.last(slot)], directions.count(slot) + 1);
+                }
+            }
+        }
+    }
+
+    /**
+     * returns the number of maximal line segments found among the set of
+     * provided points
+     *
+     * @return number of line segments found
+     */
+    public int numberOfSegments() {
+        return segments.size();
+    }
+
+    /**
+     * returns the maximal line segments found among the set of provided points
+     *
+     * @return an array containing the found line segments among the set of
+     *         points provided
+     */
+    public LineSegment[] segments() {
+        LineSegment[] a = new LineSegment[segments.size()];
+        return segments.toArray(a);
+    }
+
+    public static void main(String[] args) {
+
+        // read the N points from a file
+        Point[] points = PointFiles.read(args[0]).points();
+
+        // print the line segments
+        HashCollinearPoints collinear = new HashCollinearPoints(points);
+        for (LineSegment segment : collinear.segments()) {
+            StdOut.println(segment);
+        }
+    }
+}
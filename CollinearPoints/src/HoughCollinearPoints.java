@@ -0,0 +1,177 @@
+import java.util.Arrays;
+
+import edu.princeton.cs.algs4.StdOut;
+
+/**
+ * Finds the maximal line segments of a point set like HashCollinearPoints,
+ * with a cheap prefilter in front of the exact search, for large mostly random
+ * point sets where most points belong to no segment at all.
+ *
+ * For every point, the following points first vote in a Hough-like
+ * accumulator: an array of byte counters indexed by a hash of the slope they
+ * make with the point, which is far cheaper than grouping them in a
+ * DirectionMap. Points of the same direction always have the same slope, so
+ * they always vote in the same bucket, and a direction of k points leaves at
+ * least k votes in its bucket. Only the points falling in a bucket with enough
+ * votes are candidates, and only the candidates are then grouped exactly by
+ * direction. When no bucket has enough votes, which is the common case when
+ * there are many more buckets than points, the point is done after the vote.
+ * Buckets shared by different directions only make more candidates, never
+ * less, so no segment is missed.
+ *
+ * The points are sorted in natural order and a segment is reported by its
+ * smallest point only, as in HashCollinearPoints.
+ */
+public class HoughCollinearPoints {
+    // buckets per point of the set, so that few points share a bucket by
+    // chance, with bounds keeping the accumulator within the caches
+    private static final int BUCKETS_PER_POINT = 16;
+    private static final int MIN_BUCKET_BITS = 10;
+    private static final int MAX_BUCKET_BITS = 22;
+
+    /**
+     * Finds all maximal line segments containing 4 points or more of a
+     * PointSet and hands them to a sink as index pairs, in the natural order
+     * of their smallest points
+     *
+     * @param points
+     *            The set of coplanar points in which to find the line segments
+     * @param sink
+     *            receives the segments
+     * @throws NullPointerException
+     *             if the points or the sink are null
+     * @throws IllegalArgumentException
+     *             if two points have the same value
+     */
+    public static void find(PointSet points, IndexSegmentSink sink) {
+        find(points, 4, sink);
+    }
+
+    /**
+     * Finds all maximal line segments containing at least minPoints points of
+     * a PointSet and hands them to a sink as index pairs, in the natural order
+     * of their smallest points
+     *
+     * @param points
+     *            The set of coplanar points in which to find the line segments
+     * @param minPoints
+     *            the smallest number of points of a reported segment
+     * @param sink
+     *            receives the segments
+     * @throws NullPointerException
+     *             if the points or the sink are null
+     * @throws IllegalArgumentException
+     *             if two points have the same value or minPoints is less
+     *             than 2
+     */
+    public static void find(PointSet points, int minPoints, IndexSegmentSink sink) {
+        if (points == null || sink == null)
+            throw new NullPointerException();
+        if (minPoints < 2)
+            throw new IllegalArgumentException();
+
+        int n = points.size();
+        int[] order = points.naturalOrder();
+        long[] xs = new long[n];
+        long[] ys = new long[n];
+        for (int i = 0; i < n; ++i) {
+            xs[i] = points.x(order[i]);
+            ys[i] = points.y(order[i]);
+        }
+        for (int i = 0; i < n - 1; ++i) {
+            if (xs[i] == xs[i + 1] && ys[i] == ys[i + 1])
+                throw new IllegalArgumentException();
+        }
+        if (n < minPoints)
+            return;
+
+        int minRun = minPoints - 1;
+        // the counters saturate, a full bucket may hold any number of votes
+        int threshold = Math.min(minRun, 255);
+        int bits = 32 - Integer.numberOfLeadingZeros(Math.max(1, BUCKETS_PER_POINT * n - 1));
+        bits = Math.max(MIN_BUCKET_BITS, Math.min(MAX_BUCKET_BITS, bits));
+        int shift = 64 - bits;
+        byte[] votes = new byte[1 << bits];
+        int[] buckets = new int[n]; // bucket of every following point
+
+        DirectionMap directions = new DirectionMap(16);
+        int[] candidates = new int[n];
+        int[] blockedBy = new int[0]; // blockedBy[slot] == i if a point
+                                      // before the i-th lies on that line
+        for (int i = 0; i <= n - minPoints; ++i) {
+            // the following points all point upwards from the i-th one, as
+            // the hash requires
+            boolean heavy = false;
+            for (int j = i + 1; j < n; ++j) {
+                int b = (int) (DirectionMap.hash(xs[j] - xs[i], ys[j] - ys[i]) >>> shift);
+                buckets[j] = b;
+                int v = votes[b] & 0xFF;
+                if (v < 255) {
+                    votes[b] = (byte) ++v;
+                    if (v == threshold)
+                        heavy = true;
+                }
+            }
+
+            if (heavy) {
+                // points are added in increasing order, so the last index of
+                // a direction is its largest point
+                directions.clear();
+                for (int j = i + 1; j < n; ++j) {
+                    if ((votes[buckets[j]] & 0xFF) >= threshold) {
+                        directions.add(xs[j] - xs[i], ys[j] - ys[i], j);
+                    }
+                }
+                int candidateCount = 0;
+                for (int e = 0; e < directions.size(); ++e) {
+                    int slot = directions.slot(e);
+                    if (directions.count(slot) >= minRun) {
+                        candidates[candidateCount++] = slot;
+                    }
+                }
+
+                if (candidateCount > 0) {
+                    // the smaller points are looked at only when their bucket
+                    // may hold a candidate, pointing them upwards first
+                    if (blockedBy.length < directions.capacity()) {
+                        blockedBy = new int[directions.capacity()];
+                        Arrays.fill(blockedBy, -1);
+                    }
+                    for (int j = 0; j < i; ++j) {
+                        long dx = xs[i] - xs[j];
+                        long dy = ys[i] - ys[j];
+                        if ((votes[(int) (DirectionMap.hash(dx, dy) >>> shift)] & 0xFF) < threshold)
+                            continue;
+                        int slot = directions.find(dx, dy);
+                        if (slot >= 0) {
+                            blockedBy[slot] = i;
+                        }
+                    }
+                    for (int c = 0; c < candidateCount; ++c) {
+                        int slot = candidates[c];
+                        if (blockedBy[slot] != i) {
+                            sink.segment(order[i], order[directions.last(slot)], directions.count(slot) + 1);
+                        }
+                    }
+                }
+            }
+
+            // empty the accumulator for the next point
+            for (int j = i + 1; j < n; ++j) {
+                votes[buckets[j]] = 0;
+            }
+        }
+    }
+
+    /**
+     * Prints the segments of 4 points or more of a point file
+     *
+     * Execution: java HoughCollinearPoints input.txt [minPoints]
+     */
+    public static void main(String[] args) {
+        PointSet points = PointFiles.read(args[0]);
+        int minPoints = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        HoughCollinearPoints.find(points, minPoints,
+                (p, q, count) -> StdOut.println(new LineSegment(points.point(p), points.point(q))));
+    }
+}
@@ -0,0 +1,245 @@
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+
+import edu.princeton.cs.algs4.StdOut;
+
+/**
+ * Maintains the maximal line segments of 4 points or more of a set of planar
+ * points that grows one point at a time, for points arriving from a feed.
+ * Instead of searching the whole set again, adding a point only groups the
+ * points already there by the exact direction they make with the new point,
+ * in a DirectionMap, which takes expected linear time. Every direction holding
+ * 3 points or more is a line through the new point with at least 4 points,
+ * either a segment that did not exist before or an existing segment the new
+ * point extends (it becomes an endpoint) or grows (it falls between the
+ * endpoints). The changes are reported to a Listener as they happen.
+ *
+ * A maximal segment is identified by the indices of its smallest and largest
+ * points, as two points determine a line. The segments are kept in a hash map
+ * under that pair, so a changed segment is found from the endpoints it had
+ * before the new point arrived.
+ */
+public class IncrementalCollinearPoints {
+
+    /**
+     * Receives the changes to the maximal segments, points are given by the
+     * order in which they were added, starting at 0
+     */
+    public interface Listener {
+        /**
+         * A new maximal segment of 4 points
+         *
+         * @param p
+         *            the index of the smallest point of the segment
+         * @param q
+         *            the index of the largest point of the segment
+         * @param count
+         *            the number of points on the segment
+         */
+        void created(int p, int q, int count);
+
+        /**
+         * An existing segment gained the point just added, its endpoints are
+         * the same when the point fell between them
+         *
+         * @param oldP
+         *            the index of the smallest point before the change
+         * @param oldQ
+         *            the index of the largest point before the change
+         * @param p
+         *            the index of the smallest point of the segment
+         * @param q
+         *            the index of the largest point of the segment
+         * @param count
+         *            the number of points on the segment
+         */
+        void changed(int oldP, int oldQ, int p, int q, int count);
+    }
+
+    // a maximal segment, by the indices of its endpoints
+    private static final class Segment {
+        private int p;
+        private int q;
+        private int count;
+
+        Segment(int p, int q, int count) {
+            this.p = p;
+            this.q = q;
+            this.count = count;
+        }
+    }
+
+    private int[] xs = new int[16];
+    private int[] ys = new int[16];
+    private int n = 0;
+    private final DirectionMap directions = new DirectionMap(16);
+    private int[] candidates = new int[16];
+    private int[] smallest = new int[0]; // per slot, smallest point of a line
+    private int[] largest = new int[0]; // per slot, largest point of a line
+    private final LinkedHashMap<Long, Segment> segments = new LinkedHashMap<Long, Segment>();
+
+    /**
+     * Adds a point to the set and updates the maximal segments
+     *
+     * @param x
+     *            the x-coordinate of the point
+     * @param y
+     *            the y-coordinate of the point
+     * @param listener
+     *            receives the segments the point creates or changes, may be
+     *            null
+     * @return the index of the new point
+     * @throws IllegalArgumentException
+     *             if the point is already in the set
+     */
+    public int add(int x, int y, Listener listener) {
+        // group the points by direction, this throws before anything is
+        // modified if the point is already there
+        directions.clear();
+        for (int j = 0; j < n; ++j) {
+            directions.add((long) xs[j] - x, (long) ys[j] - y, j);
+        }
+
+        int index = n;
+        if (n == xs.length) {
+            xs = Arrays.copyOf(xs, 2 * n);
+            ys = Arrays.copyOf(ys, 2 * n);
+        }
+        xs[n] = x;
+        ys[n] = y;
+        n++;
+
+        int candidateCount = 0;
+        for (int e = 0; e < directions.size(); ++e) {
+            int slot = directions.slot(e);
+            if (directions.count(slot) >= 3) {
+                if (candidateCount == candidates.length) {
+                    candidates = Arrays.copyOf(candidates, 2 * candidateCount);
+                }
+                candidates[candidateCount++] = slot;
+            }
+        }
+        if (candidateCount == 0)
+            return index;
+
+        // the endpoints of the lines before the new point, the points were
+        // added in arrival order so they have to be compared again
+        if (smallest.length < directions.capacity()) {
+            smallest = new int[directions.capacity()];
+            largest = new int[directions.capacity()];
+        }
+        for (int c = 0; c < candidateCount; ++c) {
+            smallest[candidates[c]] = -1;
+        }
+        for (int j = 0; j < index; ++j) {
+            int slot = directions.find((long) xs[j] - x, (long) ys[j] - y);
+            if (directions.count(slot) < 3)
+                continue;
+            if (smallest[slot] < 0) {
+                smallest[slot] = j;
+                largest[slot] = j;
+            } else if (compare(j, smallest[slot]) < 0) {
+                smallest[slot] = j;
+            } else if (compare(j, largest[slot]) > 0) {
+                largest[slot] = j;
+            }
+        }
+
+        for (int c = 0; c < candidateCount; ++c) {
+            int slot = candidates[c];
+            int oldP = smallest[slot];
+            int oldQ = largest[slot];
+            int p = compare(index, oldP) < 0 ? index : oldP;
+            int q = compare(index, oldQ) > 0 ? index : oldQ;
+            int count = directions.count(slot) + 1;
+            if (count == 4) {
+                segments.put(key(p, q), new Segment(p, q, count));
+                if (listener != null)
+                    listener.created(p, q, count);
+            } else {
+                Segment segment = segments.remove(key(oldP, oldQ));
+                segment.p = p;
+                segment.q = q;
+                segment.count = count;
+                segments.put(key(p, q), segment);
+                if (listener != null)
+                    listener.changed(oldP, oldQ, p, q, count);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * @return the number of points in the set
+     */
+    public int size() {
+        return n;
+    }
+
+    /**
+     * @param i
+     *            the index of a point, in the order the points were added
+     * @return a new Point for the i-th point added
+     */
+    public Point point(int i) {
+        if (i < 0 || i >= n)
+            throw new IndexOutOfBoundsException();
+        return new Point(xs[i], ys[i]);
+    }
+
+    /**
+     * returns the number of maximal line segments among the points added so
+     * far
+     *
+     * @return number of line segments
+     */
+    public int numberOfSegments() {
+        return segments.size();
+    }
+
+    /**
+     * returns the maximal line segments among the points added so far, in
+     * the order they were created
+     *
+     * @return an array containing the line segments
+     */
+    public LineSegment[] segments() {
+        LineSegment[] a = new LineSegment[segments.size()];
+        int i = 0;
+        for (Segment segment : segments.values()) {
+            a[i++] = new LineSegment(point(segment.p), point(segment.q));
+        }
+        return a;
+    }
+
+    // compares two points in the order of Point.compareTo()
+    private int compare(int i, int j) {
+        if (ys[i] != ys[j])
+            return ys[i] < ys[j] ? -1 : 1;
+        return Integer.compare(xs[i], xs[j]);
+    }
+
+    private static Long key(int p, int q) {
+        return ((long) p << 32) | q;
+    }
+
+    public static void main(String[] args) {
+        // adds the points of a file one by one, printing the changes
+        PointSet points = PointFiles.read(args[0]);
+        IncrementalCollinearPoints collinear = new IncrementalCollinearPoints();
+        Listener listener = new Listener() {
+            public void created(int p, int q, int count) {
+                StdOut.println("+ " + new LineSegment(collinear.point(p), collinear.point(q)) + " " + count);
+            }
+
+            public void changed(int oldP, int oldQ, int p, int q, int count) {
+                StdOut.println("~ " + new LineSegment(collinear.point(oldP), collinear.point(oldQ)) + " => "
+                        + new LineSegment(collinear.point(p), collinear.point(q)) + " " + count);
+            }
+        };
+        for (int i = 0; i < points.size(); ++i) {
+            collinear.add(points.x(i), points.y(i), listener);
+        }
+        StdOut.println(collinear.numberOfSegments() + " segments");
+    }
+}
@@ -0,0 +1,19 @@
+/**
+ * Receives the maximal line segments found in a PointSet, one at a time, as
+ * the indices of their endpoints in the set, so no Point or LineSegment object
+ * has to be created for them.
+ */
+public interface IndexSegmentSink {
+
+    /**
+     * Receives a maximal line segment
+     * 
+     * @param p
+     *            the index of the smallest point of the segment
+     * @param q
+     *            the index of the largest point of the segment
+     * @param count
+     *            the number of points on the segment
+     */
+    void segment(int p, int q, int count);
+}
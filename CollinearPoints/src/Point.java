@@ -31,6 +31,24 @@ public class Point implements Comparable<Point> {
         this.y = y;
     }
 
+    /**
+     * Returns the x-coordinate of this point.
+     *
+     * @return the <em>x</em>-coordinate of the point
+     */
+    public int x() {
+        return x;
+    }
+
+    /**
+     * Returns the y-coordinate of this point.
+     *
+     * @return the <em>y</em>-coordinate of the point
+     */
+    public int y() {
+        return y;
+    }
+
     /**
      * Draws this point to standard draw.
      */
@@ -0,0 +1,264 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import edu.princeton.cs.algs4.StdOut;
+
+/**
+ * Reads and writes point files straight into the coordinate arrays of a
+ * PointSet. Files are memory mapped and parsed byte by byte, which is much
+ * faster than reading every coordinate through In.readInt() and its Scanner.
+ *
+ * Two formats are supported: the text format of the testing directory, the
+ * number of points followed by the coordinates of every point, all separated
+ * by whitespace, and a compact binary format made of the magic number
+ * 0x31535450, the number of points and then the x and y coordinates of every
+ * point, all as little endian 32-bit integers, so a binary file starts with
+ * the bytes "PTS1". read() tells the formats apart by the magic number. Run
+ * as a program, the class converts a file from one format to the other.
+ */
+public class PointFiles {
+    /**
+     * The first four bytes of a binary point file read as a little endian
+     * integer, the bytes themselves spell "PTS1"
+     */
+    public static final int MAGIC = 0x31535450;
+    /**
+     * The size of the header of a binary point file, in bytes
+     */
+    public static final int HEADER_SIZE = 8;
+
+    private static final long WINDOW_SIZE = 1L << 28; // bytes mapped at once
+
+    /**
+     * Reads a point file in either format
+     *
+     * @param file
+     *            the name of the file
+     * @return the points of the file
+     * @throws IllegalArgumentException
+     *             if the file is not a valid point file
+     * @throws UncheckedIOException
+     *             if the file cannot be read
+     */
+    public static PointSet read(String file) {
+        Path path = Paths.get(file);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer head = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            channel.read(head, 0);
+            if (head.position() == 4 && head.getInt(0) == MAGIC)
+                return readBinary(channel);
+            return readText(channel);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes points in the binary format
+     *
+     * @param points
+     *            the points to be written
+     * @param file
+     *            the name of the file, it is replaced if it exists
+     * @throws UncheckedIOException
+     *             if the file cannot be written
+     */
+    public static void writeBinary(PointSet points, String file) {
+        try (FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC);
+            buffer.putInt(points.size());
+            for (int i = 0; i < points.size(); ++i) {
+                if (buffer.remaining() < 8) {
+                    drain(channel, buffer);
+                }
+                buffer.putInt(points.x(i));
+                buffer.putInt(points.y(i));
+            }
+            drain(channel, buffer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes points in the text format
+     *
+     * @param points
+     *            the points to be written
+     * @param file
+     *            the name of the file, it is replaced if it exists
+     * @throws UncheckedIOException
+     *             if the file cannot be written
+     */
+    public static void writeText(PointSet points, String file) {
+        try (FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+            putInt(buffer, points.size());
+            buffer.put((byte) '\n');
+            for (int i = 0; i < points.size(); ++i) {
+                if (buffer.remaining() < 32) {
+                    drain(channel, buffer);
+                }
+                putInt(buffer, points.x(i));
+                buffer.put((byte) ' ');
+                putInt(buffer, points.y(i));
+                buffer.put((byte) '\n');
+            }
+            drain(channel, buffer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // maps the points of a binary file
+    private static PointSet readBinary(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        channel.read(header, 0);
+        if (header.position() < HEADER_SIZE)
+            throw new IllegalArgumentException("truncated point file");
+        int n = header.getInt(4);
+        if (n < 0 || channel.size() < HEADER_SIZE + 8L * n)
+            throw new IllegalArgumentException("truncated point file");
+
+        int[] xs = new int[n];
+        int[] ys = new int[n];
+        int i = 0;
+        // windows hold whole points so no coordinate straddles two of them
+        long pointsPerWindow = WINDOW_SIZE / 8;
+        while (i < n) {
+            int count = (int) Math.min(pointsPerWindow, n - i);
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + 8L * i, 8L * count);
+            window.order(ByteOrder.LITTLE_ENDIAN);
+            for (int k = 0; k < count; ++k, ++i) {
+                xs[i] = window.getInt(8 * k);
+                ys[i] = window.getInt(8 * k + 4);
+            }
+        }
+        return new PointSet(xs, ys);
+    }
+
+    // parses the integers of a text file window by window, a number may
+    // straddle two windows so the state of the parser is kept across them
+    private static PointSet readText(FileChannel channel) throws IOException {
+        int[] xs = null;
+        int[] ys = null;
+        int n = -1;
+        long read = 0; // numbers read after the count
+        long value = 0;
+        boolean negative = false;
+        boolean inNumber = false;
+        boolean hasDigits = false;
+
+        long size = channel.size();
+        for (long offset = 0; offset <= size; offset += WINDOW_SIZE) {
+            long length = Math.min(WINDOW_SIZE, size - offset);
+            MappedByteBuffer window = length == 0 ? null : channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+            // one more iteration past the end of the file closes the last
+            // number as if followed by a space
+            int limit = (int) length + (offset + length == size ? 1 : 0);
+            for (int k = 0; k < limit; ++k) {
+                byte b = k < length ? window.get(k) : (byte) ' ';
+                if (b >= '0' && b <= '9') {
+                    value = 10 * value + (b - '0');
+                    if (value > 1L << 31)
+                        throw new IllegalArgumentException("number out of range");
+                    inNumber = true;
+                    hasDigits = true;
+                } else if ((b == '-' || b == '+') && !inNumber) {
+                    negative = b == '-';
+                    inNumber = true;
+                } else if (b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == '\f') {
+                    if (!inNumber)
+                        continue;
+                    if (!hasDigits)
+                        throw new IllegalArgumentException("malformed number");
+                    long number = negative ? -value : value;
+                    if (number > Integer.MAX_VALUE)
+                        throw new IllegalArgumentException("number out of range");
+
+                    if (n < 0) {
+                        if (number < 0)
+                            throw new IllegalArgumentException("negative number of points");
+                        n = (int) number;
+                        xs = new int[n];
+                        ys = new int[n];
+                    } else if (read < 2L * n) {
+                        if ((read & 1) == 0)
+                            xs[(int) (read >> 1)] = (int) number;
+                        else
+                            ys[(int) (read >> 1)] = (int) number;
+                        read++;
+                    } else {
+                        throw new IllegalArgumentException("more points than announced");
+                    }
+                    value = 0;
+                    negative = false;
+                    inNumber = false;
+                    hasDigits = false;
+                } else {
+                    throw new IllegalArgumentException("unexpected character in point file");
+                }
+            }
+            if (length == 0)
+                break;
+        }
+        if (n < 0 || read < 2L * n)
+            throw new IllegalArgumentException("truncated point file");
+        return new PointSet(xs, ys);
+    }
+
+    // writes the decimal digits of an int
+    private static void putInt(ByteBuffer buffer, int value) {
+        if (value < 0) {
+            buffer.put((byte) '-');
+        }
+        long v = Math.abs((long) value);
+        int start = buffer.position();
+        do {
+            buffer.put((byte) ('0' + v % 10));
+            v /= 10;
+        } while (v != 0);
+        // the digits came least significant first
+        for (int i = start, j = buffer.position() - 1; i < j; ++i, --j) {
+            byte t = buffer.get(i);
+            buffer.put(i, buffer.get(j));
+            buffer.put(j, t);
+        }
+    }
+
+    private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Converts a point file to the other format
+     *
+     * Execution: java PointFiles --to-binary input.txt output.bin
+     *            java PointFiles --to-text input.bin output.txt
+     */
+    public static void main(String[] args) {
+        if (args.length != 3 || !(args[0].equals("--to-binary") || args[0].equals("--to-text"))) {
+            StdOut.println("usage: java PointFiles --to-binary|--to-text input output");
+            return;
+        }
+        PointSet points = read(args[1]);
+        if (args[0].equals("--to-binary"))
+            writeBinary(points, args[2]);
+        else
+            writeText(points, args[2]);
+    }
+}
@@ -0,0 +1,157 @@
+/**
+ * A set of planar points stored as two arrays of coordinates instead of one
+ * Point object per point. A million points take 8 MB instead of the 32 MB or
+ * so of their objects and references, and scanning the points reads two
+ * contiguous arrays instead of chasing a reference for every point. Points
+ * are designated by their index, Point objects are only created on demand by
+ * point().
+ *
+ * slope() computes exactly the value Point.slopeTo() would, so the engines
+ * working on a PointSet find the same segments as on the matching Point[].
+ */
+public class PointSet {
+    private final int[] xs; // x-coordinates
+    private final int[] ys; // y-coordinates
+
+    /**
+     * Creates a set over the given coordinates, the arrays are not copied and
+     * must not be modified afterwards
+     *
+     * @param xs
+     *            the x-coordinates of the points
+     * @param ys
+     *            the y-coordinates of the points
+     * @throws NullPointerException
+     *             if either array is null
+     * @throws IllegalArgumentException
+     *             if the arrays do not have the same length
+     */
+    public PointSet(int[] xs, int[] ys) {
+        if (xs == null || ys == null)
+            throw new NullPointerException();
+        if (xs.length != ys.length)
+            throw new IllegalArgumentException();
+        this.xs = xs;
+        this.ys = ys;
+    }
+
+    /**
+     * Creates a set holding the coordinates of the given points
+     *
+     * @param points
+     *            the points
+     * @throws NullPointerException
+     *             if the array or any of its points is null
+     */
+    public PointSet(Point[] points) {
+        if (points == null)
+            throw new NullPointerException();
+        xs = new int[points.length];
+        ys = new int[points.length];
+        for (int i = 0; i < points.length; ++i) {
+            xs[i] = points[i].x();
+            ys[i] = points[i].y();
+        }
+    }
+
+    /**
+     * @return the number of points in the set
+     */
+    public int size() {
+        return xs.length;
+    }
+
+    /**
+     * @param i
+     *            the index of a point
+     * @return the x-coordinate of the i-th point
+     */
+    public int x(int i) {
+        return xs[i];
+    }
+
+    /**
+     * @param i
+     *            the index of a point
+     * @return the y-coordinate of the i-th point
+     */
+    public int y(int i) {
+        return ys[i];
+    }
+
+    /**
+     * @param i
+     *            the index of a point
+     * @return a new Point with the coordinates of the i-th point
+     */
+    public Point point(int i) {
+        return new Point(xs[i], ys[i]);
+    }
+
+    /**
+     * @return a new array holding a new Point for every point of the set
+     */
+    public Point[] points() {
+        Point[] points = new Point[xs.length];
+        for (int i = 0; i < xs.length; ++i) {
+            points[i] = new Point(xs[i], ys[i]);
+        }
+        return points;
+    }
+
+    /**
+     * returns the indices of the points sorted in the order of
+     * Point.compareTo(), by y-coordinate and then by x-coordinate, equal
+     * points keeping their relative order
+     *
+     * @return the indices of the points in natural order
+     */
+    public int[] naturalOrder() {
+        // y in the high half and x in the low half, each with its sign bit
+        // flipped so the unsigned order of the keys is the natural order
+        long[] keys = new long[xs.length];
+        for (int i = 0; i < xs.length; ++i) {
+            keys[i] = (long) (ys[i] ^ Integer.MIN_VALUE) << 32 | (xs[i] ^ Integer.MIN_VALUE) & 0xFFFFFFFFL;
+        }
+        return java.util.Arrays.copyOf(new SlopeRadixSort().sort(keys, xs.length), xs.length);
+    }
+
+    /**
+     * returns the slope between two points, as Point.slopeTo() does
+     *
+     * @param i
+     *            the index of the first point
+     * @param j
+     *            the index of the second point
+     * @return the slope between the two points
+     */
+    public double slope(int i, int j) {
+        return slope(xs[i], ys[i], xs[j], ys[j]);
+    }
+
+    /**
+     * returns the slope between (x0, y0) and (x1, y1), exactly as computed by
+     * Point.slopeTo(): +0.0 for a horizontal segment, positive infinity for a
+     * vertical one and negative infinity if the points are equal
+     *
+     * @param x0
+     *            the x-coordinate of the first point
+     * @param y0
+     *            the y-coordinate of the first point
+     * @param x1
+     *            the x-coordinate of the second point
+     * @param y1
+     *            the y-coordinate of the second point
+     * @return the slope between the two points
+     */
+    public static double slope(int x0, int y0, int x1, int y1) {
+        if (y0 == y1) {
+            if (x0 == x1)
+                return Double.NEGATIVE_INFINITY;
+            return +0.0;
+        }
+        if (x0 == x1)
+            return Double.POSITIVE_INFINITY;
+        return ((double) y1 - y0) / ((double) x1 - x0);
+    }
+}
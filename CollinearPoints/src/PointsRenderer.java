@@ -0,0 +1,218 @@
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Draws a PointSet and its line segments into an off-screen image and writes
+ * it to a PNG file, so results can be looked at without a display, where
+ * StdDraw cannot open its window. Coordinates are scaled from 0..32768, the
+ * scale the main methods give StdDraw, to the size of the image, with the y
+ * axis pointing up as in StdDraw.
+ *
+ * Points are written straight into the pixel array of the image instead of
+ * being drawn one call at a time. With more points than pixels a density
+ * heatmap tells more than dots piled on top of each other: every pixel is
+ * then colored by the logarithm of the number of points falling in it. The
+ * renderer is an IndexSegmentSink, so an engine can draw the segments as it
+ * finds them.
+ */
+public class PointsRenderer implements IndexSegmentSink {
+    /**
+     * The largest coordinate of the drawing, as in the StdDraw scale
+     */
+    public static final double SCALE = 32768;
+
+    private static final int BACKGROUND = 0xFFFFFF;
+    private static final int POINT_COLOR = 0x000000;
+    private static final Color SEGMENT_COLOR = new Color(0xD62728);
+    // colors of the heatmap at the lowest, middle and highest densities
+    private static final int[] HEAT_RAMP = { 0x9ECAE1, 0x2171B5, 0x08306B };
+
+    private final PointSet points;
+    private final int width;
+    private final int height;
+    private final BufferedImage image;
+    private final int[] pixels; // the pixels of the image, row by row
+    private final Graphics2D graphics;
+
+    /**
+     * Creates a blank image for a set of points
+     *
+     * @param points
+     *            the points to be drawn
+     * @param width
+     *            the width of the image in pixels
+     * @param height
+     *            the height of the image in pixels
+     * @throws NullPointerException
+     *             if points is null
+     * @throws IllegalArgumentException
+     *             if the width or the height is not positive
+     */
+    public PointsRenderer(PointSet points, int width, int height) {
+        if (points == null)
+            throw new NullPointerException();
+        if (width <= 0 || height <= 0)
+            throw new IllegalArgumentException();
+        this.points = points;
+        this.width = width;
+        this.height = height;
+        image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        Arrays.fill(pixels, BACKGROUND);
+        graphics = image.createGraphics();
+        graphics.setColor(SEGMENT_COLOR);
+        graphics.setStroke(new BasicStroke(Math.max(1, Math.min(width, height) / 512f)));
+    }
+
+    /**
+     * Draws every point as a small square dot
+     */
+    public void drawPoints() {
+        int radius = Math.max(0, Math.min(width, height) / 512);
+        for (int i = 0; i < points.size(); ++i) {
+            int px = column(points.x(i));
+            int py = row(points.y(i));
+            for (int y = py - radius; y <= py + radius; ++y) {
+                for (int x = px - radius; x <= px + radius; ++x) {
+                    if (x >= 0 && x < width && y >= 0 && y < height) {
+                        pixels[y * width + x] = POINT_COLOR;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Draws the density of the points, every pixel colored from light to dark
+     * blue by the logarithm of the number of points in it, so the densest
+     * pixels stand out most against the background and the segments
+     */
+    public void drawHeatmap() {
+        int[] counts = new int[width * height];
+        int max = 0;
+        for (int i = 0; i < points.size(); ++i) {
+            int px = column(points.x(i));
+            int py = row(points.y(i));
+            if (px >= 0 && px < width && py >= 0 && py < height) {
+                max = Math.max(max, ++counts[py * width + px]);
+            }
+        }
+        if (max == 0)
+            return;
+        double scale = 1 / Math.log1p(max);
+        for (int i = 0; i < counts.length; ++i) {
+            if (counts[i] > 0) {
+                pixels[i] = heat(Math.log1p(counts[i]) * scale);
+            }
+        }
+    }
+
+    /**
+     * Draws a line segment between the two points of the set
+     *
+     * @param p
+     *            the index of one endpoint
+     * @param q
+     *            the index of the other endpoint
+     * @param count
+     *            the number of points on the segment, unused
+     */
+    @Override
+    public void segment(int p, int q, int count) {
+        drawSegment(points.x(p), points.y(p), points.x(q), points.y(q));
+    }
+
+    /**
+     * Draws a line segment between two points given by their coordinates
+     *
+     * @param x0
+     *            the x-coordinate of the first point
+     * @param y0
+     *            the y-coordinate of the first point
+     * @param x1
+     *            the x-coordinate of the second point
+     * @param y1
+     *            the y-coordinate of the second point
+     */
+    public void drawSegment(int x0, int y0, int x1, int y1) {
+        graphics.drawLine(column(x0), row(y0), column(x1), row(y1));
+    }
+
+    /**
+     * Writes the image to a PNG file
+     *
+     * @param file
+     *            the name of the file
+     * @throws UncheckedIOException
+     *             if the file cannot be written
+     */
+    public void write(String file) {
+        try {
+            ImageIO.write(image, "png", new File(file));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // the column of the pixel an x-coordinate falls in, SCALE itself falling
+    // in the last column
+    private int column(int x) {
+        return Math.min(width - 1, (int) Math.floor(x * (width / SCALE)));
+    }
+
+    // the row of the pixel a y-coordinate falls in, row 0 being the top and
+    // SCALE itself falling in it
+    private int row(int y) {
+        return height - 1 - Math.min(height - 1, (int) Math.floor(y * (height / SCALE)));
+    }
+
+    // color of the heat ramp at t between 0 and 1, interpolated between its
+    // stops, every color being darker than the one before and the background
+    private static int heat(double t) {
+        double position = Math.max(0, Math.min(1, t)) * (HEAT_RAMP.length - 1);
+        int stop = Math.min((int) position, HEAT_RAMP.length - 2);
+        double f = position - stop;
+        int color = 0;
+        for (int shift = 16; shift >= 0; shift -= 8) {
+            int from = (HEAT_RAMP[stop] >> shift) & 0xFF;
+            int to = (HEAT_RAMP[stop + 1] >> shift) & 0xFF;
+            color |= (int) Math.round(from + f * (to - from)) << shift;
+        }
+        return color;
+    }
+
+    /**
+     * Draws the points of a file and their segments of 4 points or more to a
+     * PNG file
+     *
+     * Execution: java PointsRenderer input.txt output.png [size] [--heatmap]
+     */
+    public static void main(String[] args) {
+        PointSet points = PointFiles.read(args[0]);
+        int size = 1024;
+        boolean heatmap = false;
+        for (int i = 2; i < args.length; ++i) {
+            if (args[i].equals("--heatmap"))
+                heatmap = true;
+            else
+                size = Integer.parseInt(args[i]);
+        }
+
+        PointsRenderer renderer = new PointsRenderer(points, size, size);
+        if (heatmap)
+            renderer.drawHeatmap();
+        else
+            renderer.drawPoints();
+        HashCollinearPoints.find(points, renderer);
+        renderer.write(args[1]);
+    }
+}
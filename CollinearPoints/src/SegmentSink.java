@@ -0,0 +1,19 @@
+/**
+ * Receives the maximal line segments found by a collinear points search, one
+ * at a time, so they can be written out or filtered as they are found instead
+ * of being kept in memory.
+ */
+public interface SegmentSink {
+
+    /**
+     * Receives a maximal line segment
+     * 
+     * @param p
+     *            the smallest point of the segment
+     * @param q
+     *            the largest point of the segment
+     * @param count
+     *            the number of points on the segment
+     */
+    void segment(Point p, Point q, int count);
+}
@@ -0,0 +1,86 @@
+/**
+ * Sorts the points around an anchor by the slope they make with it without
+ * ever recomputing a slope. The slopes are computed once by the caller and
+ * turned into long keys whose unsigned order is the order of the slopes, then
+ * an index permutation is sorted by those keys with a stable least significant
+ * digit radix sort, one byte per pass. Passes where every key has the same
+ * byte are skipped, which is common for the high bytes of the slopes of a
+ * cloud of points.
+ *
+ * Being stable, the sort keeps points of equal slope in the order they were
+ * given in, so a caller handing the points in natural order finds every run
+ * of equal slopes sorted from its smallest to its largest point.
+ *
+ * An instance keeps its scratch arrays between calls, so one instance should
+ * be reused for all the anchors examined by a thread. Nothing in the sort is
+ * specific to slopes, PointSet also uses it to put points in natural order.
+ */
+public class SlopeRadixSort {
+    private static final int RADIX = 256;
+
+    private int[] order = new int[0];
+    private int[] buffer = new int[0];
+    private final int[] count = new int[RADIX + 1];
+
+    /**
+     * returns a key that orders like the given slope when compared as an
+     * unsigned long, negative infinity comes first and positive infinity last
+     *
+     * @param slope
+     *            the slope as returned by Point.slopeTo(), it must not be NaN
+     * @return the sort key of the slope
+     */
+    public static long key(double slope) {
+        // +0.0 for -0.0 so both zeros get the same key
+        long bits = Double.doubleToLongBits(slope + 0.0);
+        // flip every bit of a negative value and only the sign of a positive
+        // one, the order of the bits is then the order of the values
+        return bits ^ ((bits >> 63) | Long.MIN_VALUE);
+    }
+
+    /**
+     * Sorts the indices 0..n-1 by their keys
+     *
+     * @param keys
+     *            the keys of the indices, only the first n are used
+     * @param n
+     *            the number of indices to sort
+     * @return an array whose first n entries are the indices in ascending key
+     *         order, indices of equal keys stay in ascending order. The array
+     *         is reused by the next call
+     */
+    public int[] sort(long[] keys, int n) {
+        if (order.length < n) {
+            order = new int[n];
+            buffer = new int[n];
+        }
+        for (int i = 0; i < n; ++i) {
+            order[i] = i;
+        }
+        if (n < 2)
+            return order;
+
+        for (int shift = 0; shift < Long.SIZE; shift += 8) {
+            int firstDigit = (int) (keys[0] >>> shift) & (RADIX - 1);
+            java.util.Arrays.fill(count, 0);
+            for (int i = 0; i < n; ++i) {
+                count[((int) (keys[order[i]] >>> shift) & (RADIX - 1)) + 1]++;
+            }
+            // every key has the same digit, the pass would not move anything
+            if (count[firstDigit + 1] == n)
+                continue;
+
+            for (int r = 0; r < RADIX; ++r) {
+                count[r + 1] += count[r];
+            }
+            for (int i = 0; i < n; ++i) {
+                int index = order[i];
+                buffer[count[(int) (keys[index] >>> shift) & (RADIX - 1)]++] = index;
+            }
+            int[] swap = order;
+            order = buffer;
+            buffer = swap;
+        }
+        return order;
+    }
+}
@@ -0,0 +1,218 @@
+import java.util.Arrays;
+
+import edu.princeton.cs.algs4.StdOut;
+
+/**
+ * A segment sink keeping only the m best segments it receives, ranked either
+ * by their number of points or by their length, so the dominant lines of a
+ * large point set can be found without ever holding all of its segments.
+ *
+ * The segments are kept in a bounded binary min-heap of parallel primitive
+ * arrays, a segment that does not beat the worst one kept is rejected in
+ * constant time and a better one replaces it in O(log m) time. Segments of
+ * equal rank are kept in the order they were received.
+ *
+ * Only the sink is bounded: the engine feeding it still finds every segment
+ * of at least minPoints points and the search costs the same as without it.
+ * Raising minPoints on the engine is what makes it skip short segments.
+ */
+public class TopSegments implements IndexSegmentSink {
+
+    /**
+     * How segments are ranked
+     */
+    public enum Rank {
+        /** by number of points, then by length */
+        POINTS,
+        /** by Euclidean length, then by number of points */
+        LENGTH
+    }
+
+    private final PointSet points;
+    private final Rank rank;
+    private final int capacity;
+    // heap of the segments kept, the worst one at the root
+    private final int[] ps;
+    private final int[] qs;
+    private final int[] counts;
+    private final double[] lengths;
+    private final long[] arrivals; // to break ties by order of arrival
+    private int size = 0;
+    private long received = 0;
+
+    /**
+     * Creates an empty sink
+     *
+     * @param points
+     *            the set the segments are found in
+     * @param m
+     *            the number of segments to keep
+     * @param rank
+     *            how the segments are ranked
+     * @throws NullPointerException
+     *             if points or rank is null
+     * @throws IllegalArgumentException
+     *             if m is negative
+     */
+    public TopSegments(PointSet points, int m, Rank rank) {
+        if (points == null || rank == null)
+            throw new NullPointerException();
+        if (m < 0)
+            throw new IllegalArgumentException();
+        this.points = points;
+        this.rank = rank;
+        capacity = m;
+        ps = new int[m];
+        qs = new int[m];
+        counts = new int[m];
+        lengths = new double[m];
+        arrivals = new long[m];
+    }
+
+    @Override
+    public void segment(int p, int q, int count) {
+        long arrival = received++;
+        if (capacity == 0)
+            return;
+        double length = Math.hypot((double) points.x(q) - points.x(p), (double) points.y(q) - points.y(p));
+        if (size < capacity) {
+            set(size, p, q, count, length, arrival);
+            swim(size++);
+            return;
+        }
+        // prune, the segment has to beat the worst one kept
+        if (compare(count, length, arrival, 0) <= 0)
+            return;
+        set(0, p, q, count, length, arrival);
+        sink(0);
+    }
+
+    /**
+     * @return the number of segments kept, at most m
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * returns the segments kept, best first
+     *
+     * @return an array containing the best segments
+     */
+    public LineSegment[] segments() {
+        int[] order = ranking();
+        LineSegment[] a = new LineSegment[size];
+        for (int i = 0; i < size; ++i) {
+            a[i] = new LineSegment(points.point(ps[order[i]]), points.point(qs[order[i]]));
+        }
+        return a;
+    }
+
+    /**
+     * returns the number of points of the segments kept, in the order of
+     * segments()
+     *
+     * @return an array containing the number of points of every segment
+     */
+    public int[] counts() {
+        int[] order = ranking();
+        int[] a = new int[size];
+        for (int i = 0; i < size; ++i) {
+            a[i] = counts[order[i]];
+        }
+        return a;
+    }
+
+    // heap positions sorted from the best segment to the worst
+    private int[] ranking() {
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; ++i) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (i, j) -> compare(counts[j], lengths[j], arrivals[j], i));
+        int[] a = new int[size];
+        for (int i = 0; i < size; ++i) {
+            a[i] = order[i];
+        }
+        return a;
+    }
+
+    // compares a segment to the one at heap position i, positive if it is
+    // better, a segment received earlier wins ties
+    private int compare(int count, double length, long arrival, int i) {
+        int c;
+        if (rank == Rank.POINTS) {
+            c = Integer.compare(count, counts[i]);
+            if (c == 0)
+                c = Double.compare(length, lengths[i]);
+        } else {
+            c = Double.compare(length, lengths[i]);
+            if (c == 0)
+                c = Integer.compare(count, counts[i]);
+        }
+        if (c == 0)
+            c = Long.compare(arrivals[i], arrival);
+        return c;
+    }
+
+    private boolean less(int i, int j) {
+        return compare(counts[i], lengths[i], arrivals[i], j) < 0;
+    }
+
+    private void set(int i, int p, int q, int count, double length, long arrival) {
+        ps[i] = p;
+        qs[i] = q;
+        counts[i] = count;
+        lengths[i] = length;
+        arrivals[i] = arrival;
+    }
+
+    private void swap(int i, int j) {
+        int p = ps[i];
+        int q = qs[i];
+        int count = counts[i];
+        double length = lengths[i];
+        long arrival = arrivals[i];
+        set(i, ps[j], qs[j], counts[j], lengths[j], arrivals[j]);
+        set(j, p, q, count, length, arrival);
+    }
+
+    private void swim(int k) {
+        while (k > 0 && less(k, (k - 1) / 2)) {
+            swap(k, (k - 1) / 2);
+            k = (k - 1) / 2;
+        }
+    }
+
+    private void sink(int k) {
+        while (2 * k + 1 < size) {
+            int j = 2 * k + 1;
+            if (j + 1 < size && less(j + 1, j))
+                j++;
+            if (!less(j, k))
+                break;
+            swap(k, j);
+            k = j;
+        }
+    }
+
+    /**
+     * Prints the m best segments of a point file
+     *
+     * Execution: java TopSegments input.txt m [points|length] [minPoints]
+     */
+    public static void main(String[] args) {
+        PointSet points = PointFiles.read(args[0]);
+        int m = Integer.parseInt(args[1]);
+        Rank rank = args.length > 2 && args[2].equals("length") ? Rank.LENGTH : Rank.POINTS;
+        int minPoints = args.length > 3 ? Integer.parseInt(args[3]) : 4;
+
+        TopSegments top = new TopSegments(points, m, rank);
+        HashCollinearPoints.find(points, minPoints, top);
+        LineSegment[] segments = top.segments();
+        int[] counts = top.counts();
+        for (int i = 0; i < segments.length; ++i) {
+            StdOut.println(segments[i] + " " + counts[i]);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+import java.util.NoSuchElementException;
+import edu.princeton.cs.algs4.StdRandom;
+
+/******************************************************************************
+ * Compilation: javac AliasSampler.java
+ *
+ * Dependencies: StdRandom.java
+ *
+ *
+ * Weighted random sampling from a fixed set of items using Vose's alias method.
+ * The weights are split in O(n) time into n columns of equal height, each
+ * column holding at most two items, so sample() only needs one uniform column
+ * and one biased coin flip, O(1) no matter how many items there are. Use
+ * WeightedRandomizedQueue instead when items or weights change over time.
+ *
+ * @author Saed Mami
+ ******************************************************************************/
+
+public class AliasSampler<Item> {
+    // data
+    private final Item[] _items; // the items to sample from
+    private final double[] _probability; // chance of keeping column i's item
+    private final int[] _alias; // the other item in column i
+
+    /**
+     * Builds the alias table for the given items and weights
+     *
+     * @param items
+     *            the items to sample from
+     * @param weights
+     *            the weight of each item, positive finite numbers
+     * @throws NullPointerException
+     *             if any of the arrays or any item is NULL
+     * @throws IllegalArgumentException
+     *             if the arrays have different lengths or a weight is not
+     *             positive and finite
+     */
+    public AliasSampler(Item[] items, double[] weights) {
+        if (items == null || weights == null)
+            throw new java.lang.NullPointerException();
+        if (items.length != weights.length)
+            throw new IllegalArgumentException("one weight per item is needed");
+
+        int n = items.length;
+        _items = items.clone();
+        _probability = new double[n];
+        _alias = new int[n];
+
+        double total = 0;
+        for (int i = 0; i < n; ++i) {
+            if (_items[i] == null)
+                throw new java.lang.NullPointerException();
+            if (!(weights[i] > 0) || Double.isInfinite(weights[i]))
+                throw new IllegalArgumentException("weight must be positive and finite");
+            total += weights[i];
+        }
+
+        // scale the weights so the average column is 1 and split them into
+        // columns that are too short and columns that are too tall
+        double[] scaled = new double[n];
+        int[] small = new int[n];
+        int[] large = new int[n];
+        int smallCount = 0;
+        int largeCount = 0;
+        for (int i = 0; i < n; ++i) {
+            scaled[i] = weights[i] * n / total;
+            if (scaled[i] < 1)
+                small[smallCount++] = i;
+            else
+                large[largeCount++] = i;
+        }
+
+        // top up every short column with a piece of a tall one
+        while (smallCount > 0 && largeCount > 0) {
+            int less = small[--smallCount];
+            int more = large[--largeCount];
+            _probability[less] = scaled[less];
+            _alias[less] = more;
+            scaled[more] = (scaled[more] + scaled[less]) - 1;
+            if (scaled[more] < 1)
+                small[smallCount++] = more;
+            else
+                large[largeCount++] = more;
+        }
+
+        // what is left is 1 up to rounding errors
+        while (largeCount > 0) {
+            _probability[large[--largeCount]] = 1;
+        }
+        while (smallCount > 0) {
+            _probability[small[--smallCount]] = 1;
+        }
+    }
+
+    /**
+     * @return the number of items to sample from
+     */
+    public int size() {
+        return _items.length;
+    }
+
+    /**
+     * @return a random item, every item is picked with a probability
+     *         proportional to its weight
+     * @throws java.util.NoSuchElementException
+     *             if there are no items to sample from
+     */
+    public Item sample() {
+        if (_items.length == 0)
+            throw new NoSuchElementException();
+        int column = StdRandom.uniform(_items.length);
+        if (StdRandom.uniform() < _probability[column])
+            return _items[column];
+        return _items[_alias[column]];
+    }
+
+    public static void main(String[] args) {
+        // unit testing
+    }
+}
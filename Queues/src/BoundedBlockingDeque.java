@@ -0,0 +1,409 @@
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/******************************************************************************
+ * Compilation: javac BoundedBlockingDeque.java
+ *
+ * Dependencies: none
+ *
+ *
+ * A thread safe double ended queue with a fixed capacity, meant to sit between
+ * a producer stage and a consumer stage of a pipeline. Producers block (or
+ * time out) while the deque is full and consumers block while it is empty, so
+ * a fast producer is slowed down to the pace of its consumers instead of
+ * filling up the heap.
+ *
+ * The items are kept in a circular array guarded by a single ReentrantLock
+ * with separate "not empty" and "not full" conditions, so a put only wakes up
+ * a waiting consumer and a take only wakes up a waiting producer. Waiting on a
+ * j.u.c lock rather than a monitor also lets virtual threads unmount from
+ * their carrier thread while blocked. The batch operations addAll and drainTo
+ * take the lock once per batch rather than once per item.
+ *
+ * @author Saed Mami
+ ******************************************************************************/
+
+public class BoundedBlockingDeque<Item> implements Iterable<Item> {
+    // data
+    private final Object[] _array; // circular buffer of the items
+    private int _first; // index of the first item
+    private int _N; // number of items
+    private final ReentrantLock _lock = new ReentrantLock();
+    private final Condition _notEmpty = _lock.newCondition();
+    private final Condition _notFull = _lock.newCondition();
+
+    /**
+     * Constructs an empty deque
+     *
+     * @param capacity
+     *            the maximum number of items the deque can hold
+     * @throws IllegalArgumentException
+     *             if capacity is not positive
+     */
+    public BoundedBlockingDeque(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity must be positive");
+        _array = new Object[capacity];
+    }
+
+    /**
+     * @return the maximum number of items the deque can hold
+     */
+    public int capacity() {
+        return _array.length;
+    }
+
+    /**
+     * @return the number of items in the deque
+     */
+    public int size() {
+        _lock.lock();
+        try {
+            return _N;
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * @return whether the deque is empty or not
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Adds an item to the front of the deque, waiting for space if needed
+     *
+     * @param item
+     *            the item to be added
+     * @throws NullPointerException
+     *             if item is NULL
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     */
+    public void putFirst(Item item) throws InterruptedException {
+        offerFirst(item, -1, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Adds an item to the end of the deque, waiting for space if needed
+     *
+     * @param item
+     *            the item to be added
+     * @throws NullPointerException
+     *             if item is NULL
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     */
+    public void putLast(Item item) throws InterruptedException {
+        offerLast(item, -1, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Adds an item to the front of the deque, waiting up to the given time for
+     * space
+     *
+     * @param item
+     *            the item to be added
+     * @param timeout
+     *            how long to wait, a negative timeout waits forever
+     * @param unit
+     *            the unit of the timeout
+     * @return whether the item was added before the timeout elapsed
+     * @throws NullPointerException
+     *             if item is NULL
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     */
+    public boolean offerFirst(Item item, long timeout, TimeUnit unit) throws InterruptedException {
+        if (item == null)
+            throw new java.lang.NullPointerException();
+        _lock.lockInterruptibly();
+        try {
+            if (!awaitSpace(timeout, unit))
+                return false;
+            _first = dec(_first);
+            _array[_first] = item;
+            _N++;
+            _notEmpty.signal();
+            return true;
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * Adds an item to the end of the deque, waiting up to the given time for
+     * space
+     *
+     * @param item
+     *            the item to be added
+     * @param timeout
+     *            how long to wait, a negative timeout waits forever
+     * @param unit
+     *            the unit of the timeout
+     * @return whether the item was added before the timeout elapsed
+     * @throws NullPointerException
+     *             if item is NULL
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     */
+    public boolean offerLast(Item item, long timeout, TimeUnit unit) throws InterruptedException {
+        if (item == null)
+            throw new java.lang.NullPointerException();
+        _lock.lockInterruptibly();
+        try {
+            if (!awaitSpace(timeout, unit))
+                return false;
+            _array[index(_N)] = item;
+            _N++;
+            _notEmpty.signal();
+            return true;
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the item at the front of the deque, waiting for one if needed
+     *
+     * @return the item at the front of the deque
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     */
+    public Item takeFirst() throws InterruptedException {
+        return pollFirst(-1, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Removes the item at the end of the deque, waiting for one if needed
+     *
+     * @return the item at the end of the deque
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     */
+    public Item takeLast() throws InterruptedException {
+        return pollLast(-1, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Removes the item at the front of the deque, waiting up to the given time
+     * for one
+     *
+     * @param timeout
+     *            how long to wait, a negative timeout waits forever
+     * @param unit
+     *            the unit of the timeout
+     * @return the item at the front of the deque, or null if the timeout
+     *         elapsed first
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     */
+    public Item pollFirst(long timeout, TimeUnit unit) throws InterruptedException {
+        _lock.lockInterruptibly();
+        try {
+            if (!awaitItem(timeout, unit))
+                return null;
+            Item item = (Item) _array[_first];
+            _array[_first] = null; // avoid loitering
+            _first = inc(_first);
+            _N--;
+            _notFull.signal();
+            return item;
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the item at the end of the deque, waiting up to the given time
+     * for one
+     *
+     * @param timeout
+     *            how long to wait, a negative timeout waits forever
+     * @param unit
+     *            the unit of the timeout
+     * @return the item at the end of the deque, or null if the timeout elapsed
+     *         first
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     */
+    public Item pollLast(long timeout, TimeUnit unit) throws InterruptedException {
+        _lock.lockInterruptibly();
+        try {
+            if (!awaitItem(timeout, unit))
+                return null;
+            int last = index(_N - 1);
+            Item item = (Item) _array[last];
+            _array[last] = null; // avoid loitering
+            _N--;
+            _notFull.signal();
+            return item;
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * Adds all the items of a collection to the end of the deque, in the
+     * collection's iteration order. The lock is taken once, and again only
+     * each time the deque fills up and the producer has to wait for space.
+     *
+     * @param items
+     *            the items to be added
+     * @throws NullPointerException
+     *             if items or any of its items is NULL, in which case no item
+     *             is added
+     * @throws InterruptedException
+     *             if interrupted while waiting, some of the items might have
+     *             been added already
+     */
+    public void addAll(Collection<? extends Item> items) throws InterruptedException {
+        Object[] batch = items.toArray();
+        for (Object item : batch) {
+            if (item == null)
+                throw new java.lang.NullPointerException();
+        }
+
+        int added = 0;
+        _lock.lockInterruptibly();
+        try {
+            while (added < batch.length) {
+                awaitSpace(-1, TimeUnit.NANOSECONDS);
+                int n = Math.min(_array.length - _N, batch.length - added);
+                for (int i = 0; i < n; ++i) {
+                    _array[index(_N++)] = batch[added++];
+                }
+                signal(_notEmpty, n);
+            }
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * Removes up to max items from the front of the deque and adds them to the
+     * given collection, without waiting and under a single lock acquisition
+     *
+     * @param collection
+     *            the collection the items are transferred to
+     * @param max
+     *            the maximum number of items to transfer
+     * @return the number of transferred items
+     * @throws NullPointerException
+     *             if collection is NULL
+     */
+    public int drainTo(Collection<? super Item> collection, int max) {
+        if (collection == null)
+            throw new java.lang.NullPointerException();
+        _lock.lock();
+        try {
+            int n = Math.min(max, _N);
+            for (int i = 0; i < n; ++i) {
+                collection.add((Item) _array[_first]);
+                _array[_first] = null; // avoid loitering
+                _first = inc(_first);
+                _N--;
+            }
+            signal(_notFull, n);
+            return Math.max(n, 0);
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * @return an iterator over a snapshot of the items, from front to end, taken
+     *         under the lock
+     */
+    public Iterator<Item> iterator() {
+        Object[] snapshot;
+        _lock.lock();
+        try {
+            snapshot = new Object[_N];
+            for (int i = 0; i < _N; ++i) {
+                snapshot[i] = _array[index(i)];
+            }
+        } finally {
+            _lock.unlock();
+        }
+        return new SnapshotIterator(snapshot);
+    }
+
+    private class SnapshotIterator implements Iterator<Item> {
+        private final Object[] _iterArray;
+        private int _currentIndex;
+
+        SnapshotIterator(Object[] items) {
+            _iterArray = items;
+            _currentIndex = 0;
+        }
+
+        public boolean hasNext() {
+            return _currentIndex < _iterArray.length;
+        }
+
+        public Item next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            return (Item) _iterArray[_currentIndex++];
+        }
+
+        public void remove() { throw new UnsupportedOperationException(); }
+    }
+
+    // waits until there is space, the lock must be held
+    private boolean awaitSpace(long timeout, TimeUnit unit) throws InterruptedException {
+        return await(_notFull, true, timeout, unit);
+    }
+
+    // waits until there is an item, the lock must be held
+    private boolean awaitItem(long timeout, TimeUnit unit) throws InterruptedException {
+        return await(_notEmpty, false, timeout, unit);
+    }
+
+    private boolean await(Condition condition, boolean forSpace, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        while (forSpace ? _N == _array.length : _N == 0) {
+            if (timeout < 0) {
+                condition.await();
+            } else {
+                if (nanos <= 0)
+                    return false;
+                nanos = condition.awaitNanos(nanos);
+            }
+        }
+        return true;
+    }
+
+    // wakes up as many waiters as there are new items (or free slots), and
+    // no more than are waiting, the lock must be held
+    private void signal(Condition condition, int n) {
+        int wakeups = Math.min(n, _lock.getWaitQueueLength(condition));
+        for (int i = 0; i < wakeups; ++i) {
+            condition.signal();
+        }
+    }
+
+    private int index(int offset) {
+        int i = _first + offset;
+        return i >= _array.length ? i - _array.length : i;
+    }
+
+    private int inc(int i) {
+        return i + 1 == _array.length ? 0 : i + 1;
+    }
+
+    private int dec(int i) {
+        return i == 0 ? _array.length - 1 : i - 1;
+    }
+
+    public static void main(String[] args) {
+        // unit testing
+    }
+}
@@ -0,0 +1,82 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/******************************************************************************
+ * Compilation: javac ByteSlice.java
+ *
+ * Dependencies: none
+ *
+ *
+ * A view over a range of bytes of a ByteBuffer, used by ByteTokenizer to hand
+ * out tokens without copying them. A slice is reused for every token, so it
+ * is only valid until the tokenizer moves on, call toString() to keep a token.
+ *
+ * @author Saed Mami
+ ******************************************************************************/
+
+public final class ByteSlice {
+    // data
+    private ByteBuffer _buffer; // the bytes the slice looks at
+    private int _offset; // absolute index of the first byte of the slice
+    private int _length; // number of bytes in the slice
+
+    /**
+     * Points the slice at a new range of bytes
+     *
+     * @param buffer
+     *            the buffer holding the bytes
+     * @param offset
+     *            the absolute index of the first byte
+     * @param length
+     *            the number of bytes
+     */
+    void set(ByteBuffer buffer, int offset, int length) {
+        _buffer = buffer;
+        _offset = offset;
+        _length = length;
+    }
+
+    /**
+     * @return the number of bytes in the slice
+     */
+    public int length() {
+        return _length;
+    }
+
+    /**
+     * @param i
+     *            the index of a byte in the slice
+     * @return the i-th byte of the slice
+     * @throws IndexOutOfBoundsException
+     *             if i is not a valid index
+     */
+    public byte byteAt(int i) {
+        if (i < 0 || i >= _length)
+            throw new IndexOutOfBoundsException();
+        return _buffer.get(_offset + i);
+    }
+
+    /**
+     * Copies the bytes of the slice to an array
+     *
+     * @param destination
+     *            the array the bytes are copied to, starting at index 0
+     * @throws IndexOutOfBoundsException
+     *             if the array is shorter than the slice
+     */
+    public void copyTo(byte[] destination) {
+        _buffer.get(_offset, destination, 0, _length);
+    }
+
+    /**
+     * @return the slice decoded as UTF-8, this is where a token gets allocated
+     */
+    public String toString() {
+        if (_buffer.hasArray()) {
+            return new String(_buffer.array(), _buffer.arrayOffset() + _offset, _length, StandardCharsets.UTF_8);
+        }
+        byte[] bytes = new byte[_length];
+        copyTo(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
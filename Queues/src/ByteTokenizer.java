@@ -0,0 +1,265 @@
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.util.NoSuchElementException;
+
+/******************************************************************************
+ * Compilation: javac ByteTokenizer.java
+ *
+ * Dependencies: ByteSlice.java
+ *
+ *
+ * Splits a byte stream into whitespace separated tokens. Unlike StdIn, which
+ * goes through a Scanner and a regular expression for every token, this reads
+ * the stream in large blocks and scans the bytes directly, tokens are decoded
+ * as UTF-8 and ASCII whitespace (space, tab, new line, carriage return, form
+ * feed and vertical tab) is treated as a delimiter.
+ *
+ * Files (including a standard input redirected from a file) are memory mapped
+ * in large windows instead of being read, other streams are read through a
+ * channel into a reusable buffer. advance() and token() expose every token as
+ * a ByteSlice over the mapped or read bytes, so no String is allocated until a
+ * caller decides to keep a token, only tokens straddling two windows are
+ * copied.
+ *
+ * Closing a tokenizer closes the file it opened itself, a stream handed to it
+ * is left open for its owner to close.
+ *
+ * @author Saed Mami
+ ******************************************************************************/
+
+public class ByteTokenizer implements AutoCloseable {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final long WINDOW_SIZE = 1L << 28; // bytes mapped at once
+
+    // data
+    private final ReadableByteChannel _channel; // the underlying stream, or
+                                                // null when mapping a file
+    private final FileChannel _file; // the mapped file, or null
+    private final InputStream _opened; // the stream opened by the tokenizer,
+                                       // or null
+    private long _fileOffset; // offset in the file of the next window
+    private ByteBuffer _window; // block of bytes being scanned
+    private int _position; // next unscanned index of the window
+    private ByteBuffer _scratch; // holds tokens straddling two windows
+    private final ByteSlice _token = new ByteSlice(); // the current token
+    private boolean _hasToken; // whether _token holds an unread token
+
+    /**
+     * Constructs a tokenizer over the given stream, if it is a FileInputStream
+     * over a regular file the file is memory mapped
+     *
+     * @param in
+     *            the stream to be split into tokens
+     * @throws NullPointerException
+     *             if in is NULL
+     */
+    public ByteTokenizer(InputStream in) {
+        this(in, false);
+    }
+
+    /**
+     * Constructs a tokenizer that memory maps a file, the file is closed by
+     * close()
+     *
+     * @param file
+     *            the file to be split into tokens
+     * @throws UncheckedIOException
+     *             if the file cannot be opened
+     */
+    public ByteTokenizer(Path file) {
+        this(open(file), true);
+    }
+
+    private ByteTokenizer(InputStream in, boolean opened) {
+        if (in == null)
+            throw new java.lang.NullPointerException();
+
+        FileChannel file = null;
+        if (in instanceof FileInputStream) {
+            FileChannel channel = ((FileInputStream) in).getChannel();
+            try {
+                // pipes and terminals have no size and cannot be mapped
+                _fileOffset = channel.position();
+                channel.size();
+                file = channel;
+            } catch (IOException e) {
+                file = null;
+            }
+        }
+        _file = file;
+        _channel = file == null ? Channels.newChannel(in) : null;
+        _window = ByteBuffer.allocate(file == null ? BUFFER_SIZE : 0);
+        _window.limit(0);
+        _scratch = ByteBuffer.allocate(64);
+        _opened = opened ? in : null;
+    }
+
+    private static FileInputStream open(Path file) {
+        try {
+            return new FileInputStream(file.toFile());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Closes the file opened by the tokenizer, if any, the windows already
+     * mapped stay valid until they are collected
+     *
+     * @throws UncheckedIOException
+     *             if the file cannot be closed
+     */
+    @Override
+    public void close() {
+        if (_opened == null)
+            return;
+        try {
+            _opened.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return whether there is another token in the stream
+     */
+    public boolean hasNext() {
+        if (!_hasToken) {
+            _hasToken = readToken();
+        }
+        return _hasToken;
+    }
+
+    /**
+     * @return the next token of the stream
+     * @throws NoSuchElementException
+     *             if the stream has no more tokens
+     */
+    public String next() {
+        if (!advance())
+            throw new NoSuchElementException();
+        return _token.toString();
+    }
+
+    /**
+     * Moves to the next token of the stream, which is then available through
+     * token()
+     *
+     * @return false if the stream has no more tokens
+     */
+    public boolean advance() {
+        if (!hasNext())
+            return false;
+        _hasToken = false;
+        return true;
+    }
+
+    /**
+     * @return a view over the bytes of the token reached by the last call to
+     *         advance(), the view is reused and only valid until the tokenizer
+     *         is used again
+     */
+    public ByteSlice token() {
+        return _token;
+    }
+
+    // reads the next token into _token, returns false at the end of the stream
+    private boolean readToken() {
+        // skip the leading delimiters
+        while (true) {
+            if (_position == _window.limit()) {
+                if (!nextWindow())
+                    return false;
+                continue;
+            }
+            if (!isDelimiter(_window.get(_position)))
+                break;
+            _position++;
+        }
+
+        int start = _position;
+        int end = scan(start);
+        if (end < _window.limit()) {
+            _token.set(_window, start, end - start);
+            _position = end;
+            return true;
+        }
+
+        // the token reaches the end of the window, gather it in the scratch
+        // buffer as it might continue in the next one
+        _scratch.clear();
+        appendToScratch(start, end);
+        _position = end;
+        while (nextWindow()) {
+            end = scan(_position);
+            appendToScratch(_position, end);
+            _position = end;
+            if (end < _window.limit())
+                break;
+        }
+        _token.set(_scratch, 0, _scratch.position());
+        return true;
+    }
+
+    // the index of the first delimiter at or after start, or the window limit
+    private int scan(int start) {
+        int limit = _window.limit();
+        int i = start;
+        while (i < limit && !isDelimiter(_window.get(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private void appendToScratch(int from, int to) {
+        int length = to - from;
+        if (_scratch.remaining() < length) {
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(2 * _scratch.capacity(), _scratch.position() + length));
+            _scratch.flip();
+            bigger.put(_scratch);
+            _scratch = bigger;
+        }
+        _scratch.put(_scratch.position(), _window, from, length);
+        _scratch.position(_scratch.position() + length);
+    }
+
+    // maps or reads the next block of the stream, false at the end of it
+    private boolean nextWindow() {
+        try {
+            if (_file != null) {
+                long size = _file.size();
+                if (_fileOffset >= size)
+                    return false;
+                long length = Math.min(WINDOW_SIZE, size - _fileOffset);
+                _window = _file.map(FileChannel.MapMode.READ_ONLY, _fileOffset, length);
+                _fileOffset += length;
+            } else {
+                _window.clear();
+                int n;
+                do {
+                    n = _channel.read(_window);
+                } while (n == 0);
+                _window.flip();
+                if (n < 0 && _window.limit() == 0) {
+                    _position = 0;
+                    return false;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        _position = 0;
+        return true;
+    }
+
+    private static boolean isDelimiter(byte b) {
+        return b == ' ' || b == '\n' || b == '\t' || b == '\r' || b == '\f' || b == 0x0b;
+    }
+}
@@ -0,0 +1,288 @@
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/******************************************************************************
+ * Compilation: javac ConcurrentRandomizedQueue.java
+ *
+ * Dependencies: none
+ *
+ *
+ * A thread safe randomized queue for many producers and consumers. The items
+ * are spread over independently locked stripes, each stripe is a resizing
+ * array with its own random number generator. A thread always enqueues into
+ * the same stripe (falling back to the next stripe when that one is busy), and
+ * dequeue() or sample() pick a stripe with a probability proportional to its
+ * count and then a uniformly random item inside it, so threads working on
+ * different stripes never wait for each other.
+ *
+ * The counts are read without locking, once per attempt, and a stripe found
+ * empty once locked is picked again. Removal is uniform whenever the queue is
+ * quiescent. When at most d other operations complete between the reads of
+ * the counts and the lock of the chosen stripe, every count read is off by at
+ * most d, so for a queue of n items the chance of removing a given item of a
+ * stripe holding m items is between (m - d) n / (m (n + d)) and
+ * (m + d) n / (m (n - d)) times 1/n.
+ *
+ * @author Saed Mami
+ ******************************************************************************/
+
+public class ConcurrentRandomizedQueue<Item> implements Iterable<Item> {
+
+    // one independently locked part of the queue
+    private static class Stripe {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final SplittableRandom random; // only used under the lock
+        private Object[] items = new Object[2];
+        private volatile int count; // written under the lock, read without
+
+        Stripe(SplittableRandom random) {
+            this.random = random;
+        }
+
+        // removes a uniformly random item, the lock must be held
+        Object removeRandom() {
+            int i = random.nextInt(count);
+            Object removed = items[i];
+            items[i] = items[count - 1];
+            items[count - 1] = null; // avoid loitering
+            count = count - 1;
+            if (count > 0 && count == items.length / 4) {
+                items = Arrays.copyOf(items, items.length / 2);
+            }
+            return removed;
+        }
+    }
+
+    // a random number for every thread, picking its home stripe
+    private static final ThreadLocal<Integer> PROBE =
+            ThreadLocal.withInitial(() -> ThreadLocalRandom.current().nextInt());
+
+    // data
+    private final Stripe[] _stripes;
+    private final int _mask; // number of stripes - 1
+    private final LongAdder _size = new LongAdder(); // striped item counter
+
+    /**
+     * Initializes an empty queue with one stripe per available processor
+     */
+    public ConcurrentRandomizedQueue() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Initializes an empty queue
+     *
+     * @param stripes
+     *            the minimum number of stripes, it is rounded up to a power of
+     *            two
+     * @throws IllegalArgumentException
+     *             if stripes is not positive
+     */
+    public ConcurrentRandomizedQueue(int stripes) {
+        if (stripes <= 0)
+            throw new IllegalArgumentException("at least one stripe is needed");
+        int n = Integer.highestOneBit(stripes);
+        if (n < stripes)
+            n <<= 1;
+
+        SplittableRandom seed = new SplittableRandom();
+        _stripes = new Stripe[n];
+        for (int i = 0; i < n; ++i) {
+            _stripes[i] = new Stripe(seed.split());
+        }
+        _mask = n - 1;
+    }
+
+    /**
+     * @return whether the queue is empty or not
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * @return the number of items in the queue, only exact when no other thread
+     *         modifies the queue
+     */
+    public int size() {
+        long size = _size.sum();
+        return (int) Math.max(0, Math.min(Integer.MAX_VALUE, size));
+    }
+
+    /**
+     * Adds a new item to the queue
+     *
+     * @param item
+     *            the item you want to add to the queue
+     * @throws java.lang.NullPointerException
+     *             if you try to add a null item
+     */
+    public void enqueue(Item item) {
+        if (item == null)
+            throw new java.lang.NullPointerException();
+
+        // prefer the stripe of this thread, but do not wait for it if another
+        // thread holds it and some other stripe is free
+        int home = homeStripe();
+        Stripe stripe = null;
+        for (int i = 0; i <= _mask; ++i) {
+            Stripe candidate = _stripes[(home + i) & _mask];
+            if (candidate.lock.tryLock()) {
+                stripe = candidate;
+                break;
+            }
+        }
+        if (stripe == null) {
+            stripe = _stripes[home];
+            stripe.lock.lock();
+        }
+
+        try {
+            if (stripe.count == stripe.items.length) {
+                stripe.items = Arrays.copyOf(stripe.items, 2 * stripe.items.length);
+            }
+            stripe.items[stripe.count] = item;
+            stripe.count = stripe.count + 1;
+        } finally {
+            stripe.lock.unlock();
+        }
+        _size.increment();
+    }
+
+    /**
+     * @return a random item from the queue after it removes it from the queue
+     * @throws java.util.NoSuchElementException
+     *             if we attempt to remove from an empty queue
+     */
+    public Item dequeue() {
+        Item item = poll();
+        if (item == null)
+            throw new NoSuchElementException();
+        return item;
+    }
+
+    /**
+     * @return a random item from the queue after it removes it from the queue,
+     *         or null if the queue is empty
+     */
+    public Item poll() {
+        return take(true);
+    }
+
+    /**
+     * @return a random item from the queue without removing it from the queue
+     * @throws java.util.NoSuchElementException
+     *             if the queue is empty
+     */
+    public Item sample() {
+        Item item = take(false);
+        if (item == null)
+            throw new NoSuchElementException();
+        return item;
+    }
+
+    // picks a stripe with a probability proportional to the counts read, and
+    // a random item in it, picks again when the stripe was emptied meanwhile
+    private Item take(boolean remove) {
+        int[] counts = new int[_stripes.length];
+        while (true) {
+            long total = 0;
+            for (int i = 0; i < _stripes.length; ++i) {
+                counts[i] = _stripes[i].count;
+                total += counts[i];
+            }
+            if (total == 0)
+                return null;
+
+            long target = ThreadLocalRandom.current().nextLong(total);
+            int chosen = 0;
+            while (target >= counts[chosen]) {
+                target -= counts[chosen];
+                chosen++;
+            }
+
+            Stripe stripe = _stripes[chosen];
+            stripe.lock.lock();
+            try {
+                if (stripe.count == 0)
+                    continue;
+                if (!remove)
+                    return (Item) stripe.items[stripe.random.nextInt(stripe.count)];
+                Item item = (Item) stripe.removeRandom();
+                _size.decrement();
+                return item;
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * @return an iterator over a snapshot of the items in random order, the
+     *         stripes are copied one at a time so the snapshot is weakly
+     *         consistent when other threads modify the queue
+     */
+    public Iterator<Item> iterator() {
+        Object[] snapshot = new Object[0];
+        int n = 0;
+        for (Stripe stripe : _stripes) {
+            stripe.lock.lock();
+            try {
+                if (n + stripe.count > snapshot.length) {
+                    snapshot = Arrays.copyOf(snapshot, Math.max(2 * snapshot.length, n + stripe.count));
+                }
+                System.arraycopy(stripe.items, 0, snapshot, n, stripe.count);
+                n += stripe.count;
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+
+        // Fisher-Yates shuffle of the snapshot
+        Object[] items = Arrays.copyOf(snapshot, n);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = n - 1; i > 0; --i) {
+            int j = random.nextInt(i + 1);
+            Object swap = items[i];
+            items[i] = items[j];
+            items[j] = swap;
+        }
+        return new SnapshotIterator(items);
+    }
+
+    private class SnapshotIterator implements Iterator<Item> {
+        private final Object[] _iterArray;
+        private int _currentIndex;
+
+        SnapshotIterator(Object[] items) {
+            _iterArray = items;
+            _currentIndex = 0;
+        }
+
+        public boolean hasNext() {
+            return _currentIndex < _iterArray.length;
+        }
+
+        public Item next() {
+            if (!hasNext()) throw new java.util.NoSuchElementException();
+            return (Item) _iterArray[_currentIndex++];
+        }
+
+        public void remove() { throw new UnsupportedOperationException(); }
+    }
+
+    // the stripe this thread enqueues into, from a random probe drawn once
+    // per thread
+    private int homeStripe() {
+        return PROBE.get() & _mask;
+    }
+
+    public static void main(String[] args) {
+        // unit testing
+    }
+}
@@ -1,5 +1,8 @@
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
 
 /******************************************************************************
  * Compilation: javac Deque.java
@@ -13,6 +16,10 @@ import java.util.NoSuchElementException;
  * worst time in inserting and removing elements at the front and end of the
  * deque
  * 
+ * The deque also keeps track of its middle node, which costs at most one extra
+ * pointer move per operation and lets its spliterator split the deque in two
+ * balanced halves in constant time for parallel streams.
+ * 
  * @author Saed Mami
  ******************************************************************************/
 
@@ -29,6 +36,8 @@ public class Deque<Item> implements Iterable<Item> {
     private Node _first; // first node in the deque
     private Node _last; // last node in the deque
     private int _N; // number of nodes
+    private Node _middle; // the node at index _N / 2
+    private int _middleIndex; // index of the middle node
 
     /**
      * Constructs an empty deque
@@ -37,6 +46,8 @@ public class Deque<Item> implements Iterable<Item> {
         _first = null;
         _last = null;
         _N = 0;
+        _middle = null;
+        _middleIndex = 0;
     }
 
     /**
@@ -74,6 +85,7 @@ public class Deque<Item> implements Iterable<Item> {
         if (_N == 1) {
             _first = newNode;
             _last = newNode;
+            updateMiddle(0);
             return;
         }
 
@@ -82,6 +94,7 @@ public class Deque<Item> implements Iterable<Item> {
         _first.next = oldFirst;
         _first.previous = null;
         oldFirst.previous = _first;
+        updateMiddle(1);
     }
 
     /**
@@ -105,6 +118,7 @@ public class Deque<Item> implements Iterable<Item> {
         if (_N == 1) {
             _first = newNode;
             _last = newNode;
+            updateMiddle(0);
             return;
         }
 
@@ -113,6 +127,7 @@ public class Deque<Item> implements Iterable<Item> {
         oldLast.next = _last;
         _last.previous = oldLast;
         _last.next = null;
+        updateMiddle(0);
     }
 
     /**
@@ -141,6 +156,7 @@ public class Deque<Item> implements Iterable<Item> {
 
         removedNode = null;
         _N--;
+        updateMiddle(-1);
         return removedItem;
     }
 
@@ -171,9 +187,189 @@ public class Deque<Item> implements Iterable<Item> {
 
         removedNode = null;
         _N--;
+        updateMiddle(0);
         return removedItem;
     }
 
+    /**
+     * Adds all the items of an array to the front of the deque, keeping their
+     * order, so items[0] becomes the first item of the deque. The items are
+     * linked together first and spliced into the deque in one step.
+     *
+     * @param items
+     *            the items to be added
+     * @throws NullPointerException
+     *             if items or any of its items is NULL, in which case nothing
+     *             is added
+     */
+    public void addAllFirst(Item[] items) {
+        Node chain = link(items);
+        if (chain == null)
+            return;
+
+        Node chainLast = chain.previous; // link() leaves the tail here
+        chain.previous = null;
+        if (_N == 0) {
+            _last = chainLast;
+        } else {
+            chainLast.next = _first;
+            _first.previous = chainLast;
+        }
+        _first = chain;
+        _N += items.length;
+        updateMiddle(items.length);
+    }
+
+    /**
+     * Adds all the items of a collection to the front of the deque, keeping
+     * their iteration order
+     *
+     * @param items
+     *            the items to be added
+     * @throws NullPointerException
+     *             if items or any of its items is NULL, in which case nothing
+     *             is added
+     */
+    public void addAllFirst(Collection<? extends Item> items) {
+        addAllFirst((Item[]) items.toArray());
+    }
+
+    /**
+     * Adds all the items of an array to the end of the deque, keeping their
+     * order. The items are linked together first and spliced into the deque
+     * in one step.
+     *
+     * @param items
+     *            the items to be added
+     * @throws NullPointerException
+     *             if items or any of its items is NULL, in which case nothing
+     *             is added
+     */
+    public void addAllLast(Item[] items) {
+        Node chain = link(items);
+        if (chain == null)
+            return;
+
+        Node chainLast = chain.previous; // link() leaves the tail here
+        chain.previous = _last;
+        if (_N == 0) {
+            _first = chain;
+        } else {
+            _last.next = chain;
+        }
+        _last = chainLast;
+        _N += items.length;
+        updateMiddle(0);
+    }
+
+    /**
+     * Adds all the items of a collection to the end of the deque, keeping their
+     * iteration order
+     *
+     * @param items
+     *            the items to be added
+     * @throws NullPointerException
+     *             if items or any of its items is NULL, in which case nothing
+     *             is added
+     */
+    public void addAllLast(Collection<? extends Item> items) {
+        addAllLast((Item[]) items.toArray());
+    }
+
+    /**
+     * Removes up to max items from the front of the deque and copies them, in
+     * order, into an array
+     *
+     * @param array
+     *            the destination array
+     * @param offset
+     *            the index of the array at which the first item is stored
+     * @param max
+     *            the maximum number of items to remove
+     * @return the number of removed items
+     * @throws NullPointerException
+     *             if array is NULL
+     * @throws IndexOutOfBoundsException
+     *             if offset or max are negative or offset + max is past the end
+     *             of the array
+     */
+    public int drainTo(Item[] array, int offset, int max) {
+        if (array == null)
+            throw new java.lang.NullPointerException();
+        if (offset < 0 || max < 0 || offset > array.length - max)
+            throw new IndexOutOfBoundsException();
+
+        int n = Math.min(max, _N);
+        Node node = _first;
+        for (int i = 0; i < n; ++i) {
+            array[offset + i] = node.item;
+            node = node.next;
+        }
+
+        _first = node;
+        if (_first == null) {
+            _last = null;
+        } else {
+            _first.previous = null;
+        }
+        _N -= n;
+        updateMiddle(-n);
+        return n;
+    }
+
+    // links the items into a chain of new nodes, returns the first node with
+    // its previous pointer set to the last node, or null for no items
+    private Node link(Item[] items) {
+        if (items == null)
+            throw new java.lang.NullPointerException();
+        for (Item item : items) {
+            if (item == null)
+                throw new java.lang.NullPointerException();
+        }
+        if (items.length == 0)
+            return null;
+
+        Node first = new Node();
+        first.item = items[0];
+        Node last = first;
+        for (int i = 1; i < items.length; ++i) {
+            Node node = new Node();
+            node.item = items[i];
+            node.previous = last;
+            last.next = node;
+            last = node;
+        }
+        first.previous = last;
+        return first;
+    }
+
+    // moves the middle node back to index _N / 2 after an operation that
+    // shifted the indices of the existing nodes by shift
+    private void updateMiddle(int shift) {
+        if (_N <= 2) {
+            _middle = _N == 0 ? null : (_N == 1 ? _first : _last);
+            _middleIndex = _N / 2;
+            return;
+        }
+
+        if (_middle == null) {
+            // the deque was empty before a bulk insertion
+            _middle = _first;
+            _middleIndex = 0;
+        } else {
+            _middleIndex += shift;
+        }
+        int target = _N / 2;
+        while (_middleIndex < target) {
+            _middle = _middle.next;
+            _middleIndex++;
+        }
+        while (_middleIndex > target) {
+            _middle = _middle.previous;
+            _middleIndex--;
+        }
+    }
+
     /**
      * @returns a forward iterator over the items in the Deque at the end of the
      */
@@ -207,6 +403,83 @@ public class Deque<Item> implements Iterable<Item> {
         }
     }
 
+    /**
+     * @returns a spliterator over the items of the deque, front to end, that
+     *          reports its exact size and splits in balanced halves, the first
+     *          split is constant time thanks to the cached middle node
+     */
+    public Spliterator<Item> spliterator() {
+        return new DequeSpliterator(_first, _N);
+    }
+
+    // internal spliterator class, covers count nodes starting at a given node
+    private class DequeSpliterator implements Spliterator<Item> {
+        private Node _currentNode;
+        private int _count; // number of nodes left to traverse
+
+        DequeSpliterator(Node first, int count) {
+            _currentNode = first;
+            _count = count;
+        }
+
+        public boolean tryAdvance(Consumer<? super Item> action) {
+            if (action == null)
+                throw new java.lang.NullPointerException();
+            if (_count == 0)
+                return false;
+            Item item = _currentNode.item;
+            _currentNode = _currentNode.next;
+            _count--;
+            action.accept(item);
+            return true;
+        }
+
+        public void forEachRemaining(Consumer<? super Item> action) {
+            if (action == null)
+                throw new java.lang.NullPointerException();
+            Node node = _currentNode;
+            int count = _count;
+            _currentNode = null;
+            _count = 0;
+            for (; count > 0; --count) {
+                action.accept(node.item);
+                node = node.next;
+            }
+        }
+
+        public Spliterator<Item> trySplit() {
+            if (_count < 2)
+                return null;
+
+            // the whole deque splits at the cached middle, anything else walks
+            // to the middle of its own range
+            int half = _count / 2;
+            Node middle;
+            if (_currentNode == _first && _count == _N) {
+                half = _middleIndex;
+                middle = _middle;
+            } else {
+                middle = _currentNode;
+                for (int i = 0; i < half; ++i) {
+                    middle = middle.next;
+                }
+            }
+
+            Spliterator<Item> prefix = new DequeSpliterator(_currentNode, half);
+            _currentNode = middle;
+            _count -= half;
+            return prefix;
+        }
+
+        public long estimateSize() {
+            return _count;
+        }
+
+        public int characteristics() {
+            return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.NONNULL;
+        }
+    }
+
     public static void main(String[] args) {
         // unit testing
     }
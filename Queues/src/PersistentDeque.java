@@ -0,0 +1,311 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/******************************************************************************
+ * Compilation: javac PersistentDeque.java
+ *
+ * Dependencies: none
+ *
+ *
+ * A double ended queue built on an immutable "banker's deque" (Okasaki): a
+ * front list and a reversed rear list of immutable nodes, rebalanced by moving
+ * half of the items across whenever one list becomes more than three times as
+ * long as the other. Every modification builds a new version that shares most
+ * of its nodes with the previous one, so snapshot() is O(1) and a snapshot
+ * stays consistent forever, no matter what the owner of the deque does next.
+ *
+ * The deque is meant to have a single writer thread and any number of reader
+ * threads, the current version is published through a volatile field so
+ * readers iterate over snapshots without any locking and never block the
+ * writer. All operations take O(1) amortized time for the writer.
+ *
+ * @author Saed Mami
+ ******************************************************************************/
+
+public class PersistentDeque<Item> implements Iterable<Item> {
+    private static final int BALANCE = 3; // maximum ratio between the lists
+
+    // immutable linked list node
+    private static final class Node {
+        private final Object item;
+        private final Node next;
+
+        Node(Object item, Node next) {
+            this.item = item;
+            this.next = next;
+        }
+    }
+
+    /**
+     * An immutable version of the deque.
+     */
+    public static final class Snapshot<Item> implements Iterable<Item> {
+        private final Node _front; // items from the front, first item first
+        private final int _frontSize;
+        private final Node _rear; // items from the end, last item first
+        private final int _rearSize;
+
+        private Snapshot(Node front, int frontSize, Node rear, int rearSize) {
+            _front = front;
+            _frontSize = frontSize;
+            _rear = rear;
+            _rearSize = rearSize;
+        }
+
+        /**
+         * @return whether the snapshot is empty or not
+         */
+        public boolean isEmpty() {
+            return size() == 0;
+        }
+
+        /**
+         * @return the number of items in the snapshot
+         */
+        public int size() {
+            return _frontSize + _rearSize;
+        }
+
+        /**
+         * @return the item at the front of the snapshot
+         * @throws NoSuchElementException
+         *             if the snapshot is empty
+         */
+        public Item first() {
+            if (isEmpty())
+                throw new NoSuchElementException();
+            // the invariant keeps a lonely item in either list
+            return (Item) (_front != null ? _front.item : _rear.item);
+        }
+
+        /**
+         * @return the item at the end of the snapshot
+         * @throws NoSuchElementException
+         *             if the snapshot is empty
+         */
+        public Item last() {
+            if (isEmpty())
+                throw new NoSuchElementException();
+            return (Item) (_rear != null ? _rear.item : _front.item);
+        }
+
+        /**
+         * @return a forward iterator over the items of the snapshot, the
+         *         references of the rear list are buffered once so it can be
+         *         walked backwards
+         */
+        public Iterator<Item> iterator() {
+            return new SnapshotIterator<Item>(this);
+        }
+    }
+
+    // iterator over a snapshot, walks the front list and then the rear list
+    // backwards
+    private static final class SnapshotIterator<Item> implements Iterator<Item> {
+        private Node _currentNode;
+        private final Object[] _rear;
+        private int _rearIndex;
+
+        SnapshotIterator(Snapshot<Item> snapshot) {
+            _currentNode = snapshot._front;
+            _rear = new Object[snapshot._rearSize];
+            Node node = snapshot._rear;
+            for (int i = _rear.length - 1; i >= 0; --i) {
+                _rear[i] = node.item;
+                node = node.next;
+            }
+            _rearIndex = 0;
+        }
+
+        public boolean hasNext() {
+            return _currentNode != null || _rearIndex < _rear.length;
+        }
+
+        public void remove() { throw new UnsupportedOperationException(); }
+
+        public Item next() {
+            if (_currentNode != null) {
+                Object item = _currentNode.item;
+                _currentNode = _currentNode.next;
+                return (Item) item;
+            }
+            if (_rearIndex == _rear.length)
+                throw new java.util.NoSuchElementException();
+            return (Item) _rear[_rearIndex++];
+        }
+    }
+
+    // data
+    private volatile Snapshot<Item> _current; // the latest version
+
+    /**
+     * Constructs an empty deque
+     */
+    public PersistentDeque() {
+        _current = new Snapshot<Item>(null, 0, null, 0);
+    }
+
+    /**
+     * @return an immutable view of the deque as it is now, in O(1) time
+     */
+    public Snapshot<Item> snapshot() {
+        return _current;
+    }
+
+    /**
+     * @return whether the deque is empty or not
+     */
+    public boolean isEmpty() {
+        return _current.isEmpty();
+    }
+
+    /**
+     * @return the number of items in the deque
+     */
+    public int size() {
+        return _current.size();
+    }
+
+    /**
+     * Adds a new item to the front of the deque.
+     *
+     * @param item
+     *            A generic item to be added at the front of the deque
+     * @throws NullPointerException
+     *             if item is NULL
+     */
+    public void addFirst(Item item) {
+        if (item == null)
+            throw new java.lang.NullPointerException();
+        Snapshot<Item> s = _current;
+        _current = balance(new Node(item, s._front), s._frontSize + 1, s._rear, s._rearSize);
+    }
+
+    /**
+     * Adds a new item to the end of the deque.
+     *
+     * @param item
+     *            A generic item to be added at the end of the deque
+     * @throws NullPointerException
+     *             if item is NULL
+     */
+    public void addLast(Item item) {
+        if (item == null)
+            throw new java.lang.NullPointerException();
+        Snapshot<Item> s = _current;
+        _current = balance(s._front, s._frontSize, new Node(item, s._rear), s._rearSize + 1);
+    }
+
+    /**
+     * Removes and returns the item at the front of the deque.
+     *
+     * @return The generic item at the front of the deque
+     * @throws NoSuchElementException
+     *             if attempted to remove from an empty deque
+     */
+    public Item removeFirst() {
+        Snapshot<Item> s = _current;
+        if (s.isEmpty())
+            throw new NoSuchElementException();
+
+        if (s._front == null) {
+            // the rear holds a single item
+            _current = new Snapshot<Item>(null, 0, null, 0);
+            return (Item) s._rear.item;
+        }
+        _current = balance(s._front.next, s._frontSize - 1, s._rear, s._rearSize);
+        return (Item) s._front.item;
+    }
+
+    /**
+     * Removes and returns the item at the end of the deque.
+     *
+     * @return The generic item at the end of the deque
+     * @throws NoSuchElementException
+     *             if attempted to remove from an empty deque
+     */
+    public Item removeLast() {
+        Snapshot<Item> s = _current;
+        if (s.isEmpty())
+            throw new NoSuchElementException();
+
+        if (s._rear == null) {
+            // the front holds a single item
+            _current = new Snapshot<Item>(null, 0, null, 0);
+            return (Item) s._front.item;
+        }
+        _current = balance(s._front, s._frontSize, s._rear.next, s._rearSize - 1);
+        return (Item) s._rear.item;
+    }
+
+    /**
+     * @return a forward iterator over a snapshot of the deque
+     */
+    public Iterator<Item> iterator() {
+        return _current.iterator();
+    }
+
+    // builds a version out of the two lists, moving half of the items over to
+    // the shorter list if they are too far apart
+    private static <Item> Snapshot<Item> balance(Node front, int frontSize, Node rear, int rearSize) {
+        int n = frontSize + rearSize;
+        if (frontSize > BALANCE * rearSize + 1) {
+            int keep = n / 2;
+            Node[] tail = new Node[1];
+            Node newFront = take(front, keep, tail);
+            // rear ++ reverse(rest of the front)
+            Node newRear = append(rear, rearSize, reverse(tail[0], null));
+            return new Snapshot<Item>(newFront, keep, newRear, n - keep);
+        }
+        if (rearSize > BALANCE * frontSize + 1) {
+            int keep = n / 2;
+            Node[] tail = new Node[1];
+            Node newRear = take(rear, keep, tail);
+            Node newFront = append(front, frontSize, reverse(tail[0], null));
+            return new Snapshot<Item>(newFront, n - keep, newRear, keep);
+        }
+        return new Snapshot<Item>(front, frontSize, rear, rearSize);
+    }
+
+    // copies the first k nodes of a list, the rest of the list is returned in
+    // rest[0]
+    private static Node take(Node list, int k, Node[] rest) {
+        Object[] items = new Object[k];
+        for (int i = 0; i < k; ++i) {
+            items[i] = list.item;
+            list = list.next;
+        }
+        rest[0] = list;
+        Node copy = null;
+        for (int i = k - 1; i >= 0; --i) {
+            copy = new Node(items[i], copy);
+        }
+        return copy;
+    }
+
+    // a copy of the first list followed by the second list, which is shared
+    private static Node append(Node first, int size, Node second) {
+        Object[] items = new Object[size];
+        for (int i = 0; i < size; ++i) {
+            items[i] = first.item;
+            first = first.next;
+        }
+        Node result = second;
+        for (int i = size - 1; i >= 0; --i) {
+            result = new Node(items[i], result);
+        }
+        return result;
+    }
+
+    // the reverse of a list put in front of another list
+    private static Node reverse(Node list, Node onto) {
+        for (; list != null; list = list.next) {
+            onto = new Node(list.item, onto);
+        }
+        return onto;
+    }
+
+    public static void main(String[] args) {
+        // unit testing
+    }
+}
@@ -0,0 +1,271 @@
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import edu.princeton.cs.algs4.In;
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.StdRandom;
+import edu.princeton.cs.algs4.StdStats;
+
+/******************************************************************************
+ * Compilation: javac QueuesBenchmark.java
+ * Execution: java -Xms1g -Xmx1g QueuesBenchmark [filter]
+ *
+ * Dependencies: Deque.java RandomizedQueue.java Subset.java In.java
+ *               StdStats.java
+ *
+ *
+ * Performance harness for the Queues assignment. Every benchmark is run for a
+ * few warm up iterations, so the JIT compiler settles, and then for a number
+ * of measured iterations, the time per operation (mean and standard deviation
+ * over the iterations) and the bytes allocated per operation by the running
+ * thread are reported. java.util.ArrayDeque is measured along with Deque as a
+ * baseline. Only benchmarks whose name contains the filter are run.
+ *
+ * The benchmarks cover mixes of Deque operations, RandomizedQueue enqueue,
+ * dequeue and sample at several fill levels (including a queue left with many
+ * holes by dequeue()), the cost of starting an iterator, and Subset end to end
+ * in both its queue and streaming modes. The queue mode is measured through
+ * its real input path, an In over a redirected System.in, and through a
+ * ByteTokenizer for comparison.
+ *
+ * @author Saed Mami
+ ******************************************************************************/
+
+public class QueuesBenchmark {
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int MEASURED_ITERATIONS = 10;
+
+    // one benchmark, run() performs a batch of operations and returns a value
+    // depending on all of them so the JIT cannot drop the work
+    private interface Benchmark {
+        long run();
+    }
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static String _filter = "";
+    private static long _sink; // keeps the results of the benchmarks alive
+
+    public static void main(String[] args) {
+        if (args.length > 0) {
+            _filter = args[0];
+        }
+        StdOut.printf("%-45s %14s %12s %12s\n", "benchmark", "ns/op", "+-", "bytes/op");
+
+        int[] sizes = { 1000, 100000, 1000000 };
+
+        // Deque mixes against the ArrayDeque baseline
+        for (int n : sizes) {
+            final int size = n;
+            measure("deque.queue(addLast,removeFirst) n=" + n, n, () -> {
+                Deque<Integer> deque = new Deque<Integer>();
+                return fifo(size, deque::addLast, deque::removeFirst);
+            });
+            measure("arraydeque.queue(addLast,removeFirst) n=" + n, n, () -> {
+                ArrayDeque<Integer> deque = new ArrayDeque<Integer>();
+                return fifo(size, deque::addLast, deque::removeFirst);
+            });
+            measure("deque.stack(addFirst,removeFirst) n=" + n, n, () -> {
+                Deque<Integer> deque = new Deque<Integer>();
+                return fifo(size, deque::addFirst, deque::removeFirst);
+            });
+            measure("arraydeque.stack(addFirst,removeFirst) n=" + n, n, () -> {
+                ArrayDeque<Integer> deque = new ArrayDeque<Integer>();
+                return fifo(size, deque::addFirst, deque::removeFirst);
+            });
+            measure("deque.random-mix n=" + n, n, () -> {
+                Deque<Integer> deque = new Deque<Integer>();
+                return randomMix(size, deque::addFirst, deque::addLast, deque::removeFirst, deque::removeLast,
+                        deque::isEmpty);
+            });
+            measure("arraydeque.random-mix n=" + n, n, () -> {
+                ArrayDeque<Integer> deque = new ArrayDeque<Integer>();
+                return randomMix(size, deque::addFirst, deque::addLast, deque::removeFirst, deque::removeLast,
+                        deque::isEmpty);
+            });
+        }
+
+        // RandomizedQueue at several fill levels
+        for (int n : sizes) {
+            final int size = n;
+            measure("randomizedqueue.enqueue n=" + n, n, () -> {
+                RandomizedQueue<Integer> queue = new RandomizedQueue<Integer>();
+                for (int i = 0; i < size; ++i) {
+                    queue.enqueue(i);
+                }
+                return queue.size();
+            });
+            measure("randomizedqueue.enqueue+dequeue n=" + n, 2L * n, () -> {
+                RandomizedQueue<Integer> queue = filledQueue(size);
+                long sum = 0;
+                while (!queue.isEmpty()) {
+                    sum += queue.dequeue();
+                }
+                return sum;
+            });
+
+            RandomizedQueue<Integer> full = filledQueue(n);
+            measure("randomizedqueue.sample(full) n=" + n, n, () -> sample(full, size));
+
+            // dequeue until just before the quarter full shrink, so three
+            // quarters of the array are holes that sample() has to skip
+            RandomizedQueue<Integer> holes = filledQueue(2 * Integer.highestOneBit(n));
+            while (holes.size() > 2 * Integer.highestOneBit(n) / 4 + 1) {
+                holes.dequeue();
+            }
+            measure("randomizedqueue.sample(holes) n=" + holes.size(), n, () -> sample(holes, size));
+
+            measure("randomizedqueue.iterator-start n=" + n, 1, () -> full.iterator().next());
+            Deque<Integer> deque = new Deque<Integer>();
+            for (int i = 0; i < n; ++i) {
+                deque.addLast(i);
+            }
+            measure("deque.iterator-start n=" + n, 1, () -> deque.iterator().next());
+        }
+
+        // Subset end to end, excluding printing
+        int[][] subsets = { { 100000, 10 }, { 100000, 1000 }, { 1000000, 10 }, { 1000000, 100000 } };
+        for (int[] subset : subsets) {
+            final int n = subset[0];
+            final int k = subset[1];
+            byte[] input = tokens(n);
+            measure("subset.default n=" + n + " k=" + k, n, () -> {
+                InputStream in = System.in;
+                try {
+                    // the In of Subset.main(), over System.in
+                    System.setIn(new ByteArrayInputStream(input));
+                    Iterator<String> it = Subset.readQueue(new In()).iterator();
+                    long sum = 0;
+                    for (int i = 0; i < k && it.hasNext(); ++i) {
+                        sum += it.next().length();
+                    }
+                    return sum;
+                } finally {
+                    System.setIn(in);
+                }
+            });
+            measure("subset.queue n=" + n + " k=" + k, n, () -> {
+                RandomizedQueue<String> queue = new RandomizedQueue<String>();
+                try (ByteTokenizer in = new ByteTokenizer(new ByteArrayInputStream(input))) {
+                    while (in.hasNext()) {
+                        queue.enqueue(in.next());
+                    }
+                }
+                long sum = 0;
+                Iterator<String> it = queue.iterator();
+                for (int i = 0; i < k && it.hasNext(); ++i) {
+                    sum += it.next().length();
+                }
+                return sum;
+            });
+            measure("subset.stream n=" + n + " k=" + k, n, () -> {
+                Reservoir<String> reservoir = Subset.sample(k, new ByteArrayInputStream(input));
+                return reservoir.size();
+            });
+        }
+
+        StdOut.println("done, checksum " + _sink);
+    }
+
+    // runs a benchmark and prints its time and allocation per operation
+    private static void measure(String name, long operations, Benchmark benchmark) {
+        if (!name.contains(_filter))
+            return;
+
+        for (int i = 0; i < WARMUP_ITERATIONS; ++i) {
+            _sink += benchmark.run();
+        }
+
+        double[] nanos = new double[MEASURED_ITERATIONS];
+        long allocated = THREADS.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < MEASURED_ITERATIONS; ++i) {
+            long start = System.nanoTime();
+            _sink += benchmark.run();
+            nanos[i] = (double) (System.nanoTime() - start) / operations;
+        }
+        allocated = THREADS.getCurrentThreadAllocatedBytes() - allocated;
+
+        StdOut.printf("%-45s %14.2f %12.2f %12.1f\n", name, StdStats.mean(nanos), StdStats.stddev(nanos),
+                (double) allocated / MEASURED_ITERATIONS / operations);
+    }
+
+    // n adds followed by n removals
+    private static long fifo(int n, Consumer<Integer> add,
+            Supplier<Integer> remove) {
+        for (int i = 0; i < n; ++i) {
+            add.accept(i);
+        }
+        long sum = 0;
+        for (int i = 0; i < n; ++i) {
+            sum += remove.get();
+        }
+        return sum;
+    }
+
+    // n random operations out of addFirst, addLast, removeFirst and removeLast,
+    // adds are twice as likely as removals so the deque keeps growing
+    private static long randomMix(int n, Consumer<Integer> addFirst,
+            Consumer<Integer> addLast, Supplier<Integer> removeFirst,
+            Supplier<Integer> removeLast, BooleanSupplier isEmpty) {
+        long sum = 0;
+        int seed = 17;
+        for (int i = 0; i < n; ++i) {
+            seed = seed * 1103515245 + 12345; // cheap generator, same sequence for every backend
+            switch ((seed >>> 16) % 6) {
+            case 0:
+            case 1:
+                addFirst.accept(i);
+                break;
+            case 2:
+            case 3:
+                addLast.accept(i);
+                break;
+            case 4:
+                if (!isEmpty.getAsBoolean())
+                    sum += removeFirst.get();
+                break;
+            default:
+                if (!isEmpty.getAsBoolean())
+                    sum += removeLast.get();
+            }
+        }
+        return sum;
+    }
+
+    private static RandomizedQueue<Integer> filledQueue(int n) {
+        RandomizedQueue<Integer> queue = new RandomizedQueue<Integer>();
+        for (int i = 0; i < n; ++i) {
+            queue.enqueue(i);
+        }
+        return queue;
+    }
+
+    private static long sample(RandomizedQueue<Integer> queue, int n) {
+        long sum = 0;
+        for (int i = 0; i < n; ++i) {
+            sum += queue.sample();
+        }
+        return sum;
+    }
+
+    // n random lower case tokens separated by spaces
+    private static byte[] tokens(int n) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < n; ++i) {
+            int length = StdRandom.uniform(3, 12);
+            for (int j = 0; j < length; ++j) {
+                text.append((char) ('a' + StdRandom.uniform(26)));
+            }
+            text.append(i % 16 == 15 ? '\n' : ' ');
+        }
+        return text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
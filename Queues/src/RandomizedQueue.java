@@ -1,5 +1,11 @@
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import edu.princeton.cs.algs4.StdRandom;
 
 public class RandomizedQueue<Item> implements Iterable<Item> {
@@ -50,6 +56,108 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
         _array[_nullCount + _N++] = item;
     }
 
+    /**
+     * Adds all the items of an array to the queue, the array is grown at most
+     * once and the items are copied in a single pass
+     * 
+     * @param items
+     *            the items you want to add to the queue
+     * @throws java.lang.NullPointerException
+     *             if items or any of its items is null, in which case nothing
+     *             is added
+     */
+    public void enqueueAll(Item[] items) {
+        if (items == null)
+            throw new java.lang.NullPointerException();
+        for (Item item : items) {
+            if (item == null)
+                throw new java.lang.NullPointerException();
+        }
+
+        if (_N + _nullCount + items.length > _array.length) {
+            int newSize = _array.length;
+            while (newSize < _N + items.length) {
+                newSize *= 2;
+            }
+            // resizing also squeezes out the holes left by dequeue()
+            resize(newSize);
+        }
+        System.arraycopy(items, 0, _array, _N + _nullCount, items.length);
+        _N += items.length;
+    }
+
+    /**
+     * Adds all the items of a collection to the queue
+     * 
+     * @param items
+     *            the items you want to add to the queue
+     * @throws java.lang.NullPointerException
+     *             if items or any of its items is null, in which case nothing
+     *             is added
+     */
+    public void enqueueAll(Collection<? extends Item> items) {
+        enqueueAll((Item[]) items.toArray());
+    }
+
+    /**
+     * Removes k distinct random items from the queue in expected O(k) time,
+     * every item is drawn like dequeue() does and the array is shrunk at most
+     * once
+     * 
+     * @param k
+     *            the number of items to remove
+     * @return the removed items in random order
+     * @throws IllegalArgumentException
+     *             if k is negative
+     * @throws java.util.NoSuchElementException
+     *             if the queue has less than k items, in which case nothing is
+     *             removed
+     */
+    public List<Item> dequeueMany(int k) {
+        if (k < 0)
+            throw new IllegalArgumentException("negative number of items");
+        if (k > _N)
+            throw new NoSuchElementException();
+
+        List<Item> removed = new ArrayList<Item>(k);
+        for (int i = 0; i < k; ++i) {
+            removed.add(removeRandom());
+        }
+        shrink();
+        return removed;
+    }
+
+    /**
+     * Removes up to max random items from the queue and stores them into an
+     * array, in expected O(max) time like dequeueMany()
+     * 
+     * @param array
+     *            the destination array
+     * @param offset
+     *            the index of the array at which the first item is stored
+     * @param max
+     *            the maximum number of items to remove
+     * @return the number of removed items
+     * @throws java.lang.NullPointerException
+     *             if array is null
+     * @throws IndexOutOfBoundsException
+     *             if offset or max are negative or offset + max is past the end
+     *             of the array
+     */
+    public int drainTo(Item[] array, int offset, int max) {
+        if (array == null)
+            throw new java.lang.NullPointerException();
+        if (offset < 0 || max < 0 || offset > array.length - max)
+            throw new IndexOutOfBoundsException();
+
+        int n = Math.min(max, _N);
+        for (int i = 0; i < n; ++i) {
+            array[offset + i] = removeRandom();
+        }
+        shrink();
+        return n;
+    }
+
     /**
      * @return a random item from the queue after it removes it from the queue
      * @throws java.util.NoSuchelementException
@@ -132,10 +240,60 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
         return new RandomQueueIterator();
     }
 
+    /**
+     * @return a spliterator over a snapshot of the items in random order. The
+     *         snapshot is shuffled with a random generator of its own, so it is
+     *         safe to use from parallel streams, and splits in constant time
+     */
+    public Spliterator<Item> spliterator() {
+        Object[] snapshot = new Object[_N];
+        SplittableRandom random = new SplittableRandom();
+        int j = 0;
+        for (int i = 0; i < _N + _nullCount; i++) {
+            if (_array[i] == null) {
+                continue;
+            }
+            // inside out Fisher-Yates shuffle while compacting
+            int r = random.nextInt(j + 1);
+            snapshot[j++] = snapshot[r];
+            snapshot[r] = _array[i];
+        }
+        return Spliterators.spliterator(snapshot, Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.NONNULL);
+    }
+
     public static void main(String[] args) {
         // unit testing
     }
 
+    // removes a random item without shrinking the array: the last slot in use
+    // is moved into the slot of the item, so the number of holes stays the
+    // same whether that slot held an item or a hole
+    private Item removeRandom() {
+        int end = _N + _nullCount;
+        Item removed = null;
+        int randomIndex = 0;
+        do {
+            randomIndex = StdRandom.uniform(end);
+            removed = _array[randomIndex];
+        } while (removed == null);
+
+        _array[randomIndex] = _array[end - 1];
+        _array[end - 1] = null; // avoid loitering
+        --_N;
+        return removed;
+    }
+
+    // halves the array as many times as dequeue() would have, in one resize
+    private void shrink() {
+        int newSize = _array.length;
+        while (_N > 0 && _N <= newSize / 4) {
+            newSize /= 2;
+        }
+        if (newSize < _array.length) {
+            resize(newSize);
+        }
+    }
+
     // utility function to resize the array and copy the old array to the new
     // one
     private void resize(int newSize) {
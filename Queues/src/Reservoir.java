@@ -0,0 +1,309 @@
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
+
+/******************************************************************************
+ * Compilation: javac Reservoir.java
+ *
+ * Dependencies: none
+ *
+ *
+ * A fixed capacity reservoir that keeps a uniformly random sample of at most k
+ * items out of a stream of unknown length, using O(k) memory no matter how many
+ * items are offered to it. It implements the skip based "Algorithm L" by Li, so
+ * instead of drawing a random number for every item of the stream, it draws
+ * the number of items to skip before the next replacement, which makes the
+ * expected number of random draws O(k (1 + log(n / k)))
+ *
+ * Reservoirs filled from different streams (possibly on different threads) can
+ * be merged into a uniform sample of the union of the streams, since every
+ * reservoir remembers how many items it has seen.
+ *
+ * @author Saed Mami
+ ******************************************************************************/
+
+public class Reservoir<Item> implements Iterable<Item> {
+
+    // data
+    private Item[] _items; // the sampled items, the first _size are in use
+    private int _size; // number of items currently held in the reservoir
+    private long _count; // number of items offered to the reservoir so far
+    private long _next; // the count at which the next replacement happens
+    private double _w; // the running weight of Algorithm L
+    private final SplittableRandom _random; // each reservoir owns its source of
+                                            // randomness
+
+    /**
+     * Constructs an empty reservoir that can hold at most k items
+     *
+     * @param k
+     *            the capacity of the reservoir (the size of the sample)
+     * @throws IllegalArgumentException
+     *             if k is negative
+     */
+    public Reservoir(int k) {
+        if (k < 0)
+            throw new IllegalArgumentException("negative reservoir capacity");
+        _items = (Item[]) new Object[k];
+        _size = 0;
+        _count = 0;
+        _random = new SplittableRandom();
+    }
+
+    /**
+     * Constructs a reservoir from a sample taken earlier, for instance a sample
+     * that was saved to a file, so it can be merged with other reservoirs
+     * without reading its stream again
+     *
+     * @param k
+     *            the capacity of the reservoir
+     * @param count
+     *            the number of items of the stream the sample was taken from
+     * @param sample
+     *            the sampled items, there must be exactly min(k, count) of them
+     * @throws IllegalArgumentException
+     *             if k or count are negative or the size of the sample does not
+     *             match min(k, count)
+     * @throws NullPointerException
+     *             if sample or any of its items is NULL
+     */
+    public Reservoir(int k, long count, Iterable<Item> sample) {
+        this(k);
+        if (count < 0)
+            throw new IllegalArgumentException("negative item count");
+        for (Item item : sample) {
+            if (item == null)
+                throw new java.lang.NullPointerException();
+            if (_size == _items.length)
+                throw new IllegalArgumentException("sample is larger than the reservoir");
+            _items[_size++] = item;
+        }
+        if (_size != Math.min(k, count))
+            throw new IllegalArgumentException("sample size does not match the item count");
+        _count = count;
+        restart();
+    }
+
+    /**
+     * @return the maximum number of items the reservoir can hold
+     */
+    public int capacity() {
+        return _items.length;
+    }
+
+    /**
+     * @return the number of items currently held in the reservoir
+     */
+    public int size() {
+        return _size;
+    }
+
+    /**
+     * @return the number of items that were offered to the reservoir
+     */
+    public long count() {
+        return _count;
+    }
+
+    /**
+     * Offers a new item from the stream to the reservoir, the item might be
+     * kept or discarded.
+     *
+     * @param item
+     *            the next item of the stream
+     * @throws NullPointerException
+     *             if item is NULL
+     */
+    public void add(Item item) {
+        if (item == null)
+            throw new java.lang.NullPointerException();
+
+        int slot = accept();
+        if (slot >= 0) {
+            _items[slot] = item;
+        }
+    }
+
+    /**
+     * Counts one more item of the stream and decides its fate without looking
+     * at it, this lets callers avoid building items that will be discarded
+     * anyway.
+     *
+     * @return the slot of the reservoir in which the item has to be stored
+     *         using {@link #set(int, Object)}, or -1 if the item is discarded
+     */
+    public int accept() {
+        _count++;
+
+        // fill the reservoir first
+        if (_size < _items.length) {
+            int slot = _size++;
+            if (_size == _items.length) {
+                _w = Math.exp(Math.log(random()) / _items.length);
+                skip();
+            }
+            return slot;
+        }
+
+        if (_count != _next) {
+            return -1;
+        }
+
+        // replace a random item and compute the next skip
+        int slot = _random.nextInt(_items.length);
+        _w *= Math.exp(Math.log(random()) / _items.length);
+        skip();
+        return slot;
+    }
+
+    /**
+     * Stores an item in a slot returned by {@link #accept()}
+     *
+     * @param slot
+     *            the reservoir slot returned by accept()
+     * @param item
+     *            the item to be stored
+     * @throws NullPointerException
+     *             if item is NULL
+     */
+    public void set(int slot, Item item) {
+        if (item == null)
+            throw new java.lang.NullPointerException();
+        if (slot < 0 || slot >= _size)
+            throw new IndexOutOfBoundsException();
+        _items[slot] = item;
+    }
+
+    /**
+     * @returns an iterator over the sampled items, in no particular order
+     */
+    public Iterator<Item> iterator() {
+        return new ReservoirIterator();
+    }
+
+    // internal iterator class
+    private class ReservoirIterator implements Iterator<Item> {
+        private int _currentIndex = 0;
+
+        public boolean hasNext() {
+            return _currentIndex < _size;
+        }
+
+        public Item next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            return _items[_currentIndex++];
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Merges two reservoirs into a uniform random sample of the union of their
+     * streams. Items are drawn without replacement, each draw comes from the
+     * first reservoir with a probability proportional to the number of its
+     * stream items that were not drawn yet, so larger streams get their fair
+     * share of the sample. Neither of the two reservoirs is modified.
+     *
+     * @param a
+     *            the first reservoir
+     * @param b
+     *            the second reservoir
+     * @return a reservoir with the smaller of the two capacities holding a
+     *         uniform sample of both streams, it can keep accepting items
+     * @throws NullPointerException
+     *             if either reservoir is NULL
+     */
+    public static <Item> Reservoir<Item> merge(Reservoir<Item> a, Reservoir<Item> b) {
+        if (a == null || b == null)
+            throw new java.lang.NullPointerException();
+
+        Reservoir<Item> merged = new Reservoir<Item>(Math.min(a.capacity(), b.capacity()));
+        Item[] poolA = Arrays.copyOf(a._items, a._size);
+        Item[] poolB = Arrays.copyOf(b._items, b._size);
+        int leftA = poolA.length; // items of the pools that were not drawn
+        int leftB = poolB.length;
+        long restA = a._count; // stream items that were not drawn
+        long restB = b._count;
+
+        int k = (int) Math.min(merged.capacity(), a._count + b._count);
+        while (merged._size < k) {
+            if (merged._random.nextLong(restA + restB) < restA) {
+                merged._items[merged._size++] = draw(poolA, leftA--, merged._random);
+                restA--;
+            } else {
+                merged._items[merged._size++] = draw(poolB, leftB--, merged._random);
+                restB--;
+            }
+        }
+
+        merged._count = a._count + b._count;
+        merged.restart();
+        return merged;
+    }
+
+    // removes a random item out of the first n items of the pool by swapping it
+    // to the end of the range
+    private static <Item> Item draw(Item[] pool, int n, SplittableRandom random) {
+        int i = random.nextInt(n);
+        Item item = pool[i];
+        pool[i] = pool[n - 1];
+        pool[n - 1] = item;
+        return item;
+    }
+
+    // resumes Algorithm L for a reservoir that was filled by other means, the
+    // running weight is distributed as the k-th smallest out of n uniform
+    // random numbers, which is Beta(k, n - k + 1), independently of which items
+    // ended up in the sample
+    private void restart() {
+        if (_size < _items.length)
+            return; // still filling up
+        if (_items.length == 0) {
+            _next = Long.MAX_VALUE;
+            return;
+        }
+        double g = gamma(_items.length);
+        _w = g / (g + gamma(_count - _items.length + 1));
+        skip();
+    }
+
+    // a Gamma(shape, 1) random number for shape >= 1 (Marsaglia and Tsang)
+    private double gamma(double shape) {
+        double d = shape - 1.0 / 3;
+        double c = 1 / Math.sqrt(9 * d);
+        while (true) {
+            double x = _random.nextGaussian();
+            double v = 1 + c * x;
+            if (v <= 0)
+                continue;
+            v = v * v * v;
+            double u = random();
+            if (Math.log(u) < x * x / 2 + d - d * v + d * Math.log(v))
+                return d * v;
+        }
+    }
+
+    // computes the count of the next item that will enter the reservoir
+    private void skip() {
+        long gap = (long) Math.floor(Math.log(random()) / Math.log(1 - _w));
+        // guard against overflow when _w gets extremely small
+        _next = (gap < 0 || gap > Long.MAX_VALUE - _count - 1) ? Long.MAX_VALUE : _count + gap + 1;
+    }
+
+    // a uniform random number in the open interval (0, 1)
+    private double random() {
+        double r;
+        do {
+            r = _random.nextDouble();
+        } while (r == 0.0);
+        return r;
+    }
+
+    public static void main(String[] args) {
+        // unit testing
+    }
+}
@@ -0,0 +1,586 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/******************************************************************************
+ * Compilation: javac SpillingDeque.java
+ *
+ * Dependencies: Deque.java
+ *
+ *
+ * A double ended queue that can grow beyond the size of the heap. Only the
+ * items near the two ends live in memory, each end is a Deque of up to two
+ * segments worth of items. When an end overflows, the segment next to the
+ * middle is written to a file of its own and the file is put in the middle of
+ * the deque, when an end runs empty, the nearest file of the middle is memory
+ * mapped and read back. Every item is written and read at most once per spill,
+ * so addFirst, addLast, removeFirst and removeLast take O(1) amortized time.
+ *
+ * Items are turned into bytes by a pluggable Serializer. A segment holds at
+ * most segmentSize items and at most MAX_SEGMENT_BYTES bytes, larger batches
+ * are split, and its mapping is released as soon as it has been written or
+ * read. A durable deque keeps its files when closed, together with a manifest
+ * listing them in order, and is recovered from them when opened on the same
+ * directory again. flush() writes copies of the items held in memory to
+ * segment files replacing those of the previous flush, forces them and the
+ * manifest to the disk and only then renames the manifest in place. The files
+ * on disk describe the deque as of the last flush() or close(), not its live
+ * items: a segment read back into memory stays on disk until a newer manifest
+ * no longer lists it, so recovery after a crash restores the deque exactly as
+ * it was at the last flush() or close().
+ *
+ * @author Saed Mami
+ ******************************************************************************/
+
+public class SpillingDeque<Item> implements Iterable<Item>, AutoCloseable {
+    private static final String MANIFEST = "manifest";
+    // the largest segment file, well below the 2 GB a mapping can hold
+    private static final long MAX_SEGMENT_BYTES = 1L << 30;
+    // sun.misc.Unsafe and its invokeCleaner method, which unmaps a buffer,
+    // null when they cannot be reached
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            Class<?> type = Class.forName("sun.misc.Unsafe");
+            Field field = type.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+            invokeCleaner = type.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // mappings are then released by the garbage collector
+            unsafe = null;
+            invokeCleaner = null;
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    /**
+     * Converts items to bytes and back.
+     */
+    public interface Serializer<Item> {
+        /**
+         * @return the number of bytes write() will use for the item
+         */
+        int size(Item item);
+
+        /**
+         * Writes the item at the position of the buffer
+         */
+        void write(Item item, ByteBuffer buffer);
+
+        /**
+         * Reads an item written by write() from the position of the buffer,
+         * the item must not keep a reference to the buffer, which is unmapped
+         * once the segment has been read
+         */
+        Item read(ByteBuffer buffer);
+    }
+
+    /**
+     * Serializer for strings, stored as their UTF-8 length followed by their
+     * UTF-8 bytes
+     */
+    public static final Serializer<String> STRINGS = new Serializer<String>() {
+        public int size(String item) {
+            return 4 + item.getBytes(StandardCharsets.UTF_8).length;
+        }
+
+        public void write(String item, ByteBuffer buffer) {
+            byte[] bytes = item.getBytes(StandardCharsets.UTF_8);
+            buffer.putInt(bytes.length);
+            buffer.put(bytes);
+        }
+
+        public String read(ByteBuffer buffer) {
+            byte[] bytes = new byte[buffer.getInt()];
+            buffer.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    };
+
+    // data
+    private final Path _directory; // where the segment files live
+    private final Serializer<Item> _serializer;
+    private final int _segmentSize; // number of items per segment file
+    private final boolean _durable; // whether files survive close()
+    private Deque<Item> _head; // items at the front, in memory
+    private Deque<Item> _tail; // items at the back, in memory
+    private final ArrayDeque<Segment> _middle; // spilled items, in order
+    private long _N; // number of items
+    private long _nextId; // id of the next segment file
+    private List<Segment> _snapshot = new ArrayList<Segment>(); // copies of
+                                    // the items in memory at the last flush
+    private List<Segment> _consumed = new ArrayList<Segment>(); // segments
+                                    // read back but listed by the manifest
+
+    // a segment file and the number of items it holds
+    private static class Segment {
+        private final long id;
+        private final int count;
+
+        Segment(long id, int count) {
+            this.id = id;
+            this.count = count;
+        }
+    }
+
+    /**
+     * Constructs a deque that spills to the given directory, if the deque is
+     * durable and the directory holds the files of a previously closed deque,
+     * its items are recovered
+     *
+     * @param directory
+     *            the directory in which segment files are kept, it is created
+     *            if needed
+     * @param serializer
+     *            converts the items to bytes and back
+     * @param segmentSize
+     *            the number of items per segment file, up to two segments per
+     *            end are kept in memory
+     * @param durable
+     *            whether the files should be kept when the deque is closed
+     * @throws NullPointerException
+     *             if directory or serializer is NULL
+     * @throws IllegalArgumentException
+     *             if segmentSize is not positive
+     * @throws UncheckedIOException
+     *             if the directory or the recovered files cannot be read
+     */
+    public SpillingDeque(Path directory, Serializer<Item> serializer, int segmentSize, boolean durable) {
+        if (directory == null || serializer == null)
+            throw new java.lang.NullPointerException();
+        if (segmentSize <= 0)
+            throw new IllegalArgumentException("segment size must be positive");
+
+        _directory = directory;
+        _serializer = serializer;
+        _segmentSize = segmentSize;
+        _durable = durable;
+        _head = new Deque<Item>();
+        _tail = new Deque<Item>();
+        _middle = new ArrayDeque<Segment>();
+        try {
+            Files.createDirectories(directory);
+            if (durable && Files.exists(directory.resolve(MANIFEST))) {
+                recover();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return whether the deque is empty or not
+     */
+    public boolean isEmpty() {
+        return _N == 0;
+    }
+
+    /**
+     * @return the number of items in the deque
+     */
+    public long size() {
+        return _N;
+    }
+
+    /**
+     * @return the number of items currently held in memory
+     */
+    public int sizeInMemory() {
+        return _head.size() + _tail.size();
+    }
+
+    /**
+     * Adds a new item to the front of the deque.
+     *
+     * @param item
+     *            A generic item to be added at the front of the deque
+     * @throws NullPointerException
+     *             if item is NULL
+     * @throws UncheckedIOException
+     *             if a segment cannot be written
+     */
+    public void addFirst(Item item) {
+        if (item == null)
+            throw new java.lang.NullPointerException();
+
+        _head.addFirst(item);
+        _N++;
+        if (_head.size() == 2 * _segmentSize) {
+            // spill the half of the head closest to the middle
+            Object[] items = new Object[_segmentSize];
+            for (int i = _segmentSize - 1; i >= 0; --i) {
+                items[i] = _head.removeLast();
+            }
+            List<Segment> segments = writeSegments(items);
+            for (int i = segments.size() - 1; i >= 0; --i) {
+                _middle.addFirst(segments.get(i));
+            }
+        }
+    }
+
+    /**
+     * Adds a new item to the end of the deque.
+     *
+     * @param item
+     *            A generic item to be added at the end of the deque
+     * @throws NullPointerException
+     *             if item is NULL
+     * @throws UncheckedIOException
+     *             if a segment cannot be written
+     */
+    public void addLast(Item item) {
+        if (item == null)
+            throw new java.lang.NullPointerException();
+
+        _tail.addLast(item);
+        _N++;
+        if (_tail.size() == 2 * _segmentSize) {
+            // spill the half of the tail closest to the middle
+            Object[] items = new Object[_segmentSize];
+            for (int i = 0; i < _segmentSize; ++i) {
+                items[i] = _tail.removeFirst();
+            }
+            _middle.addAll(writeSegments(items));
+        }
+    }
+
+    /**
+     * Removes and returns the item at the front of the deque.
+     *
+     * @return The generic item at the front of the deque
+     * @throws NoSuchElementException
+     *             if attempted to remove from an empty deque
+     * @throws UncheckedIOException
+     *             if a segment cannot be read
+     */
+    public Item removeFirst() {
+        if (_N == 0)
+            throw new NoSuchElementException();
+
+        _N--;
+        if (!_head.isEmpty())
+            return _head.removeFirst();
+        if (_middle.isEmpty())
+            return _tail.removeFirst();
+
+        // bring the first segment back into memory
+        Segment segment = _middle.removeFirst();
+        for (Item item : readSegment(segment)) {
+            _head.addLast(item);
+        }
+        release(segment);
+        return _head.removeFirst();
+    }
+
+    /**
+     * Removes and returns the item at the end of the deque.
+     *
+     * @return The generic item at the end of the deque
+     * @throws NoSuchElementException
+     *             if attempted to remove from an empty deque
+     * @throws UncheckedIOException
+     *             if a segment cannot be read
+     */
+    public Item removeLast() {
+        if (_N == 0)
+            throw new NoSuchElementException();
+
+        _N--;
+        if (!_tail.isEmpty())
+            return _tail.removeLast();
+        if (_middle.isEmpty())
+            return _head.removeLast();
+
+        // bring the last segment back into memory
+        Segment segment = _middle.removeLast();
+        for (Item item : readSegment(segment)) {
+            _tail.addLast(item);
+        }
+        release(segment);
+        return _tail.removeLast();
+    }
+
+    /**
+     * Writes copies of the items held in memory to segment files together with
+     * a manifest, so a durable deque can be recovered from its directory even
+     * if the process dies later on. The items stay in memory and the deque
+     * stays usable, the files written by the previous flush are replaced, so
+     * flushing often does not pile up small segments.
+     *
+     * @throws UncheckedIOException
+     *             if the files cannot be written
+     */
+    public void flush() {
+        List<Segment> head = writeSegments(toArray(_head));
+        List<Segment> tail = writeSegments(toArray(_tail));
+
+        StringBuilder manifest = new StringBuilder();
+        for (Segment segment : head) {
+            manifest.append(segment.id).append('\n');
+        }
+        for (Segment segment : _middle) {
+            manifest.append(segment.id).append('\n');
+        }
+        for (Segment segment : tail) {
+            manifest.append(segment.id).append('\n');
+        }
+        try {
+            Path temporary = _directory.resolve(MANIFEST + ".tmp");
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.wrap(manifest.toString().getBytes(StandardCharsets.US_ASCII));
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            Files.move(temporary, _directory.resolve(MANIFEST), StandardCopyOption.ATOMIC_MOVE);
+            forceDirectory();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        // the new manifest no longer lists the copies of the previous flush
+        // nor the segments read back since then
+        for (Segment segment : _snapshot) {
+            deleteSegment(segment);
+        }
+        for (Segment segment : _consumed) {
+            deleteSegment(segment);
+        }
+        _snapshot = new ArrayList<Segment>(head);
+        _snapshot.addAll(tail);
+        _consumed = new ArrayList<Segment>();
+    }
+
+    /**
+     * Closes the deque, a durable deque flushes its items to its directory, any
+     * other deque deletes its segment files
+     *
+     * @throws UncheckedIOException
+     *             if the files cannot be written or deleted
+     */
+    public void close() {
+        if (_durable) {
+            flush();
+            return;
+        }
+        while (!_middle.isEmpty()) {
+            deleteSegment(_middle.removeFirst());
+        }
+        for (Segment segment : _snapshot) {
+            deleteSegment(segment);
+        }
+        for (Segment segment : _consumed) {
+            deleteSegment(segment);
+        }
+        _snapshot = new ArrayList<Segment>();
+        _consumed = new ArrayList<Segment>();
+        try {
+            // a manifest left by flush() would list the deleted files
+            Files.deleteIfExists(_directory.resolve(MANIFEST));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        _head = new Deque<Item>();
+        _tail = new Deque<Item>();
+        _N = 0;
+    }
+
+    /**
+     * @return a forward iterator over the items in the deque, segments are read
+     *         back one at a time so iterating does not need more memory than a
+     *         segment, the deque must not be modified while iterating
+     */
+    public Iterator<Item> iterator() {
+        return new SpillingDequeIterator();
+    }
+
+    // internal iterator class, walks the head, the segments and the tail
+    private class SpillingDequeIterator implements Iterator<Item> {
+        private Iterator<Item> _current = _head.iterator();
+        private final Iterator<Segment> _segments = new ArrayList<Segment>(_middle).iterator();
+        private boolean _tailVisited = false;
+
+        public boolean hasNext() {
+            while (!_current.hasNext()) {
+                if (_segments.hasNext()) {
+                    _current = readSegment(_segments.next()).iterator();
+                } else if (!_tailVisited) {
+                    _current = _tail.iterator();
+                    _tailVisited = true;
+                } else {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        public void remove() { throw new UnsupportedOperationException(); }
+
+        public Item next() {
+            if (!hasNext())
+                throw new java.util.NoSuchElementException();
+            return _current.next();
+        }
+    }
+
+    // copies an in-memory end into an array, front to back
+    private static Object[] toArray(Deque<?> deque) {
+        Object[] items = new Object[deque.size()];
+        int i = 0;
+        for (Object item : deque) {
+            items[i++] = item;
+        }
+        return items;
+    }
+
+    // writes the items to as few segment files as the limits on the number
+    // of items and bytes of a segment allow, front to back
+    private List<Segment> writeSegments(Object[] items) {
+        List<Segment> segments = new ArrayList<Segment>();
+        int from = 0;
+        long bytes = 4;
+        for (int i = 0; i < items.length; ++i) {
+            long size = _serializer.size((Item) items[i]);
+            if (4 + size > MAX_SEGMENT_BYTES)
+                throw new IllegalArgumentException("item too large for a segment");
+            if (i - from == _segmentSize || bytes + size > MAX_SEGMENT_BYTES) {
+                segments.add(writeSegment(items, from, i, bytes));
+                from = i;
+                bytes = 4;
+            }
+            bytes += size;
+        }
+        if (from < items.length) {
+            segments.add(writeSegment(items, from, items.length, bytes));
+        }
+        return segments;
+    }
+
+    // writes items[from, to) to a new segment file: the item count followed by
+    // the serialized items
+    private Segment writeSegment(Object[] items, int from, int to, long bytes) {
+        long id = _nextId++;
+        try (FileChannel channel = FileChannel.open(segmentPath(id), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+            buffer.putInt(to - from);
+            for (int i = from; i < to; ++i) {
+                _serializer.write((Item) items[i], buffer);
+            }
+            if (_durable) {
+                buffer.force();
+            }
+            unmap(buffer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new Segment(id, to - from);
+    }
+
+    // maps a segment file and reads all its items, front to back
+    private List<Item> readSegment(Segment segment) {
+        try (FileChannel channel = FileChannel.open(segmentPath(segment.id), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int count = buffer.getInt();
+            List<Item> items = new ArrayList<Item>(count);
+            for (int i = 0; i < count; ++i) {
+                items.add(_serializer.read(buffer));
+            }
+            unmap(buffer);
+            return items;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // deletes a segment that has been read back, a durable deque keeps it
+    // until the next manifest, as the current one may still list it
+    private void release(Segment segment) {
+        if (_durable)
+            _consumed.add(segment);
+        else
+            deleteSegment(segment);
+    }
+
+    private void deleteSegment(Segment segment) {
+        try {
+            Files.deleteIfExists(segmentPath(segment.id));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // rebuilds the middle of the deque from the manifest of a closed deque,
+    // all recovered items stay on disk until they are needed
+    private void recover() throws IOException {
+        for (String line : Files.readAllLines(_directory.resolve(MANIFEST), StandardCharsets.US_ASCII)) {
+            if (line.isEmpty())
+                continue;
+            long id = Long.parseLong(line.trim());
+            if (!Files.exists(segmentPath(id)))
+                throw new IOException("missing segment file " + segmentPath(id));
+            ByteBuffer count = ByteBuffer.allocate(4);
+            try (FileChannel channel = FileChannel.open(segmentPath(id), StandardOpenOption.READ)) {
+                while (count.hasRemaining()) {
+                    if (channel.read(count) < 0)
+                        throw new IOException("truncated segment file " + segmentPath(id));
+                }
+            }
+            _middle.addLast(new Segment(id, count.getInt(0)));
+            _N += count.getInt(0);
+            _nextId = Math.max(_nextId, id + 1);
+        }
+    }
+
+    // releases a mapping right away instead of when the buffer is collected,
+    // the buffer must not be used afterwards
+    private static void unmap(MappedByteBuffer buffer) {
+        if (INVOKE_CLEANER == null)
+            return;
+        try {
+            INVOKE_CLEANER.invoke(UNSAFE, buffer);
+        } catch (ReflectiveOperationException e) {
+            // left to the garbage collector
+        }
+    }
+
+    // makes the rename of the manifest durable, not every platform can open
+    // a directory, where it cannot the rename is left to the file system
+    private void forceDirectory() {
+        try (FileChannel channel = FileChannel.open(_directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // not supported here
+        }
+    }
+
+    private Path segmentPath(long id) {
+        return _directory.resolve("segment-" + id);
+    }
+
+    public static void main(String[] args) {
+        // unit testing
+    }
+}
@@ -1,5 +1,45 @@
-import edu.princeton.cs.algs4.StdIn;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import edu.princeton.cs.algs4.In;
 import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.StdRandom;
+
+/******************************************************************************
+ * Compilation: javac Subset.java
+ * Execution: java Subset k [--stream] < input.txt
+ *            java Subset k [--save] file1 file2 ...
+ *            java Subset k [--save] --merge sample1 sample2 ...
+ *
+ * Dependencies: RandomizedQueue.java Reservoir.java ByteTokenizer.java
+ *               ByteSlice.java
+ *
+ *
+ * Reads a sequence of strings from standard input and prints exactly k of them
+ * uniformly at random. By default all the strings are kept in a randomized
+ * queue, with --stream only k strings are kept at any time using reservoir
+ * sampling, so the input can be arbitrarily large. The reservoir decides the
+ * fate of every string before it is decoded, so only the strings that make it
+ * into the sample are ever allocated.
+ *
+ * When given input files, every file is sampled into its own reservoir in
+ * parallel and the reservoirs are merged into a uniform sample of all the
+ * files. With --save the merged reservoir is printed as a sample record (its
+ * capacity, its item count and then the sampled strings) instead of the
+ * subset, and --merge combines such records without reading the original
+ * files again.
+ *
+ * @author Saed Mami
+ ******************************************************************************/
 public class Subset {
 
     public static void main(String[] args) {
@@ -8,15 +48,40 @@ public class Subset {
         if (args.length > 0) {
             k = Integer.parseInt(args[0]);
         }
-        
-        // create a randomized queue
-        RandomizedQueue<String> queue = new RandomizedQueue<String>(); 
-        while (!StdIn.isEmpty()) {
-            queue.enqueue(StdIn.readString());
+
+        boolean stream = false;
+        boolean save = false;
+        boolean merge = false;
+        List<String> files = new ArrayList<String>();
+        for (int i = 1; i < args.length; ++i) {
+            if (args[i].equals("--stream"))
+                stream = true;
+            else if (args[i].equals("--save"))
+                save = true;
+            else if (args[i].equals("--merge"))
+                merge = true;
+            else
+                files.add(args[i]);
+        }
+
+        if (!files.isEmpty() || merge) {
+            Reservoir<String> reservoir = merge ? mergeSamples(k, files) : sampleFiles(k, files);
+            if (save)
+                printRecord(reservoir);
+            else
+                printShuffled(reservoir);
+            return;
         }
-        
+
+        if (stream) {
+            streamingSubset(k);
+            return;
+        }
+
+        RandomizedQueue<String> queue = readQueue(new In());
+
         int printedStrings = 0;
-        // random iterating 
+        // random iterating
         for (String s : queue) {
             if (printedStrings >= k)
                 break;
@@ -25,4 +90,135 @@ public class Subset {
         }
     }
 
+    // reads every string of an input, standard input for main(), into a
+    // randomized queue
+    static RandomizedQueue<String> readQueue(In in) {
+        RandomizedQueue<String> queue = new RandomizedQueue<String>();
+        while (!in.isEmpty()) {
+            queue.enqueue(in.readString());
+        }
+        return queue;
+    }
+
+    // samples k strings out of standard input keeping only k strings in memory
+    private static void streamingSubset(int k) {
+        // bypass System.in's buffering so a redirected file can be mapped
+        printShuffled(sample(k, new FileInputStream(FileDescriptor.in)));
+    }
+
+    /**
+     * Samples every file into its own reservoir, using one thread per available
+     * processor, and merges the reservoirs
+     *
+     * @param k
+     *            the size of the sample
+     * @param files
+     *            the names of the files to be sampled
+     * @return a uniform sample of the strings in all the files
+     */
+    public static Reservoir<String> sampleFiles(int k, List<String> files) {
+        int threads = Math.min(files.size(), Runtime.getRuntime().availableProcessors());
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            List<Future<Reservoir<String>>> samples = new ArrayList<Future<Reservoir<String>>>();
+            for (String file : files) {
+                samples.add(pool.submit(() -> {
+                    try (InputStream in = new FileInputStream(file)) {
+                        return sample(k, in);
+                    }
+                }));
+            }
+
+            Reservoir<String> merged = new Reservoir<String>(k);
+            for (Future<Reservoir<String>> sample : samples) {
+                merged = Reservoir.merge(merged, sample.get());
+            }
+            return merged;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Merges sample records written by --save into one sample
+     *
+     * @param k
+     *            the size of the sample
+     * @param files
+     *            the names of the files holding the sample records
+     * @return a uniform sample of the strings of all the original streams
+     */
+    public static Reservoir<String> mergeSamples(int k, List<String> files) {
+        Reservoir<String> merged = new Reservoir<String>(k);
+        for (String file : files) {
+            try (InputStream in = new FileInputStream(file)) {
+                merged = Reservoir.merge(merged, readRecord(in));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Samples the strings of a stream keeping only k of them in memory
+     *
+     * @param k
+     *            the size of the sample
+     * @param in
+     *            the stream of whitespace separated strings
+     * @return a uniform sample of the strings in the stream
+     */
+    public static Reservoir<String> sample(int k, InputStream in) {
+        Reservoir<String> reservoir = new Reservoir<String>(k);
+        try (ByteTokenizer tokens = new ByteTokenizer(in)) {
+            while (tokens.advance()) {
+                int slot = reservoir.accept();
+                if (slot >= 0) {
+                    reservoir.set(slot, tokens.token().toString());
+                }
+            }
+        }
+        return reservoir;
+    }
+
+    // reads a sample record written by printRecord()
+    private static Reservoir<String> readRecord(InputStream in) {
+        try (ByteTokenizer tokens = new ByteTokenizer(in)) {
+            int capacity = Integer.parseInt(tokens.next());
+            long count = Long.parseLong(tokens.next());
+            List<String> sample = new ArrayList<String>();
+            while (tokens.hasNext()) {
+                sample.add(tokens.next());
+            }
+            return new Reservoir<String>(capacity, count, sample);
+        }
+    }
+
+    private static void printRecord(Reservoir<String> reservoir) {
+        StdOut.println(reservoir.capacity());
+        StdOut.println(reservoir.count());
+        for (String s : reservoir) {
+            StdOut.println(s);
+        }
+    }
+
+    // the reservoir is a uniform sample but not in a random order
+    private static void printShuffled(Reservoir<String> reservoir) {
+        String[] sample = new String[reservoir.size()];
+        int i = 0;
+        for (String s : reservoir) {
+            sample[i++] = s;
+        }
+        StdRandom.shuffle(sample);
+        for (String s : sample) {
+            StdOut.println(s);
+        }
+    }
+
 }
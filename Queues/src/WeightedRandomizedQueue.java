@@ -0,0 +1,305 @@
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import edu.princeton.cs.algs4.StdRandom;
+
+/******************************************************************************
+ * Compilation: javac WeightedRandomizedQueue.java
+ *
+ * Dependencies: StdRandom.java
+ *
+ *
+ * A randomized queue in which every item carries a positive weight, dequeue()
+ * and sample() pick an item with a probability proportional to its weight.
+ * The items are kept in a resizing array and their weights in a Fenwick (binary
+ * indexed) tree of prefix sums, so enqueue, dequeue, sample and weight updates
+ * all take O(log n) time. Removed items are replaced by the last item of the
+ * array so the array never has holes.
+ *
+ * Since items move around inside the array, enqueue() returns a handle that
+ * identifies the item until it is dequeued, the handle is used to update the
+ * weight of the item.
+ *
+ * @author Saed Mami
+ ******************************************************************************/
+
+public class WeightedRandomizedQueue<Item> implements Iterable<Item> {
+    // data
+    private Item[] _array; // the items of the queue, the first _N are in use
+    private double[] _weights; // the weight of each item of _array
+    private double[] _tree; // Fenwick tree over _weights, 1 based
+    private int _N; // number of elements in the queue
+
+    private int[] _handleOf; // the handle of each item of _array
+    private int[] _positionOf; // the position in _array of each handle
+    private int[] _freeHandles; // stack of handles that can be given away
+    private int _freeCount; // number of handles in _freeHandles
+    private int _handleCount; // number of handles ever given away
+
+    /**
+     * Initializes an empty weighted randomized queue.
+     */
+    public WeightedRandomizedQueue() {
+        _array = (Item[]) new Object[2];
+        _weights = new double[2];
+        _tree = new double[3];
+        _handleOf = new int[2];
+        _positionOf = new int[2];
+        _freeHandles = new int[2];
+        _N = 0;
+    }
+
+    /**
+     * @return whether the queue is empty or not
+     */
+    public boolean isEmpty() {
+        return _N == 0;
+    }
+
+    /**
+     * @return the number of items in the queue
+     */
+    public int size() {
+        return _N;
+    }
+
+    /**
+     * @return the sum of the weights of all the items in the queue
+     */
+    public double totalWeight() {
+        return prefixSum(_N);
+    }
+
+    /**
+     * Adds a new item to the queue
+     *
+     * @param item
+     *            the item you want to add to the queue
+     * @param weight
+     *            the weight of the item, a positive finite number
+     * @return a handle that can be used to update the weight of the item until
+     *         it leaves the queue
+     * @throws java.lang.NullPointerException
+     *             if you try to add a null item
+     * @throws IllegalArgumentException
+     *             if the weight is not positive and finite
+     */
+    public int enqueue(Item item, double weight) {
+        if (item == null)
+            throw new java.lang.NullPointerException();
+        checkWeight(weight);
+        if (_array.length == _N) {
+            resize(2 * _array.length);
+        }
+
+        int handle = newHandle();
+        int position = _N++;
+        _array[position] = item;
+        _weights[position] = weight;
+        _handleOf[position] = handle;
+        _positionOf[handle] = position;
+        add(position, weight);
+        return handle;
+    }
+
+    /**
+     * @return a random item from the queue after it removes it from the queue,
+     *         every item is picked with a probability proportional to its
+     *         weight
+     * @throws java.util.NoSuchElementException
+     *             if we attempt to remove from an empty queue
+     */
+    public Item dequeue() {
+        if (isEmpty())
+            throw new NoSuchElementException();
+
+        int position = pick();
+        Item removed = _array[position];
+        int last = _N - 1;
+
+        // move the last item into the freed position
+        releaseHandle(_handleOf[position]);
+        if (position != last) {
+            add(position, _weights[last] - _weights[position]);
+            _array[position] = _array[last];
+            _weights[position] = _weights[last];
+            _handleOf[position] = _handleOf[last];
+            _positionOf[_handleOf[position]] = position;
+        }
+        add(last, -_weights[last]);
+        _array[last] = null; // avoid loitering
+        _weights[last] = 0;
+        --_N;
+
+        // resize the array of necessary
+        if (_N > 0 && _N == _array.length / 4) {
+            resize(_array.length / 2);
+        }
+        return removed;
+    }
+
+    /**
+     * @return a random item from the queue without removing it from the queue,
+     *         every item is picked with a probability proportional to its
+     *         weight
+     * @throws java.util.NoSuchElementException
+     *             if the queue is empty
+     */
+    public Item sample() {
+        if (isEmpty())
+            throw new NoSuchElementException();
+        return _array[pick()];
+    }
+
+    /**
+     * Changes the weight of an item in the queue
+     *
+     * @param handle
+     *            the handle returned by enqueue() for the item
+     * @param weight
+     *            the new weight of the item, a positive finite number
+     * @throws IllegalArgumentException
+     *             if the handle does not belong to an item in the queue or the
+     *             weight is not positive and finite
+     */
+    public void setWeight(int handle, double weight) {
+        checkWeight(weight);
+        int position = positionOf(handle);
+        add(position, weight - _weights[position]);
+        _weights[position] = weight;
+    }
+
+    /**
+     * @param handle
+     *            the handle returned by enqueue() for the item
+     * @return the current weight of the item
+     * @throws IllegalArgumentException
+     *             if the handle does not belong to an item in the queue
+     */
+    public double weight(int handle) {
+        return _weights[positionOf(handle)];
+    }
+
+    // Weighted random order iterator, every item gets the key log(u) / w for a
+    // uniform u and the items are visited by decreasing key (Efraimidis and
+    // Spirakis), which is the same order as repeatedly dequeuing from a copy
+    private class WeightedQueueIterator implements Iterator<Item> {
+        private Item[] _iterArray; // independent copy of the items in the order
+                                   // they will be visited
+        private int _currentIndex;
+
+        WeightedQueueIterator() {
+            double[] keys = new double[_N];
+            Integer[] order = new Integer[_N];
+            for (int i = 0; i < _N; ++i) {
+                keys[i] = Math.log(1 - StdRandom.uniform()) / _weights[i];
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Double.compare(keys[b], keys[a]));
+
+            _iterArray = (Item[]) new Object[_N];
+            for (int i = 0; i < _N; ++i) {
+                _iterArray[i] = _array[order[i]];
+            }
+            _currentIndex = 0;
+        }
+
+        public boolean hasNext() {
+            return _currentIndex < _iterArray.length;
+        }
+
+        public Item next() {
+            if (!hasNext()) throw new java.util.NoSuchElementException();
+            return _iterArray[_currentIndex++];
+        }
+
+        public void remove() { throw new UnsupportedOperationException(); }
+    }
+
+    /**
+     * @return an iterator over the items in the queue in weighted random order
+     */
+    public Iterator<Item> iterator() {
+        return new WeightedQueueIterator();
+    }
+
+    public static void main(String[] args) {
+        // unit testing
+    }
+
+    // picks a random position with a probability proportional to its weight by
+    // descending the Fenwick tree, O(log n)
+    private int pick() {
+        double remaining = StdRandom.uniform() * totalWeight();
+        int position = 0;
+        for (int step = Integer.highestOneBit(_N); step > 0; step >>= 1) {
+            int next = position + step;
+            if (next <= _N && _tree[next] <= remaining) {
+                position = next;
+                remaining -= _tree[next];
+            }
+        }
+        // rounding errors might push us past the last item
+        return Math.min(position, _N - 1);
+    }
+
+    // adds delta to the weight at the given (0 based) position in the tree
+    private void add(int position, double delta) {
+        for (int i = position + 1; i < _tree.length; i += i & -i) {
+            _tree[i] += delta;
+        }
+    }
+
+    // sum of the weights of the first n positions
+    private double prefixSum(int n) {
+        double sum = 0;
+        for (int i = n; i > 0; i -= i & -i) {
+            sum += _tree[i];
+        }
+        return sum;
+    }
+
+    private int positionOf(int handle) {
+        if (handle < 0 || handle >= _handleCount || _positionOf[handle] < 0)
+            throw new IllegalArgumentException("not a handle of an item in the queue");
+        return _positionOf[handle];
+    }
+
+    private int newHandle() {
+        if (_freeCount > 0) {
+            return _freeHandles[--_freeCount];
+        }
+        if (_handleCount == _positionOf.length) {
+            _positionOf = Arrays.copyOf(_positionOf, 2 * _positionOf.length);
+            _freeHandles = Arrays.copyOf(_freeHandles, 2 * _freeHandles.length);
+        }
+        return _handleCount++;
+    }
+
+    private void releaseHandle(int handle) {
+        _positionOf[handle] = -1;
+        _freeHandles[_freeCount++] = handle;
+    }
+
+    private static void checkWeight(double weight) {
+        if (!(weight > 0) || Double.isInfinite(weight))
+            throw new IllegalArgumentException("weight must be positive and finite");
+    }
+
+    // utility function to resize the arrays, the Fenwick tree is rebuilt from
+    // scratch in linear time which also gets rid of accumulated rounding errors
+    private void resize(int newSize) {
+        _array = Arrays.copyOf(_array, newSize);
+        _weights = Arrays.copyOf(_weights, newSize);
+        _handleOf = Arrays.copyOf(_handleOf, newSize);
+
+        _tree = new double[newSize + 1];
+        for (int i = 1; i <= newSize; ++i) {
+            _tree[i] += _weights[i - 1];
+            int parent = i + (i & -i);
+            if (parent <= newSize) {
+                _tree[parent] += _tree[i];
+            }
+        }
+    }
+}